@@ -8,15 +8,81 @@ package disaster;
 
 // Class imports
 import com.vividsolutions.jts.geom.Coordinate;
-import com.vividsolutions.jts.planargraph.DirectedEdgeStar;
 import com.vividsolutions.jts.planargraph.Node;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import sim.util.geo.GeomPlanarGraphDirectedEdge;
 
 
 @SuppressWarnings("restriction")
-public class AStar {
+public class AStar implements Router {
+
+	// the routing snapshot this search runs on
+	final RoadGraph graph;
+	// optional landmark distances that tighten the straight line heuristic, null to use it alone
+	final Landmarks landmarks;
+	// optional congestion-aware travel times used as edge costs, null to route on straight line length
+	final TrafficCosts traffic;
+	int expanded = 0;	// nodes taken off the open set by the last search
+
+	// per-node search state indexed by node id; a node belongs to the current
+	// search only when its stamp matches, so nothing is cleared per query
+	private final double[] gx, hx, fx;
+	private final int[] cameFrom;	// slot of the edge by which the node was reached, -1 at the start
+	private final int[] stamp;
+	private final int[] order;		// when the node was opened, breaks ties between equal fx
+	private final int[] heapIndex;	// position in the open heap, -1 if not open
+	private final boolean[] closed;
+	private final int[] targetStamp;	// node is on the reusable part of the path being repaired when equal to searchStamp
+	private final int[] targetIndex;	// where that node sits on the old path
+	private int searchStamp = 0;
+	private int insertCount = 0;
+
+	// binary min-heap of open node ids
+	private final int[] heap;
+	private int heapSize = 0;
+
+
+	/**
+	 * @param graph road network snapshot to search
+	 */
+	public AStar(RoadGraph graph) {
+		this(graph, null);
+	}
+
+
+	/**
+	 * @param graph road network snapshot to search
+	 * @param landmarks ALT landmark table for graph, or null
+	 */
+	public AStar(RoadGraph graph, Landmarks landmarks) {
+		this(graph, landmarks, null);
+	}
+
+
+	/**
+	 * @param graph road network snapshot to search
+	 * @param landmarks ALT landmark table for graph, or null
+	 * @param traffic travel time costs for graph, or null
+	 */
+	public AStar(RoadGraph graph, Landmarks landmarks, TrafficCosts traffic) {
+		this.graph = graph;
+		this.landmarks = landmarks;
+		this.traffic = traffic;
+		int n = graph.numNodes;
+		gx = new double[n];
+		hx = new double[n];
+		fx = new double[n];
+		cameFrom = new int[n];
+		stamp = new int[n];
+		order = new int[n];
+		heapIndex = new int[n];
+		closed = new boolean[n];
+		targetStamp = new int[n];
+		targetIndex = new int[n];
+		heap = new int[n];
+	}
+
 
 	/**
 	 * AStar Algorithm takes two network nodes and returns the shortest path
@@ -37,84 +103,180 @@ public class AStar {
         ArrayList<GeomPlanarGraphDirectedEdge> result =
             new ArrayList<GeomPlanarGraphDirectedEdge>();
 
-        // containers for the metainformation about the Nodes relative to the
-        // A* search
-        HashMap<Node, AStarNodeWrapper> foundNodes =
-            new HashMap<Node, AStarNodeWrapper>();
+        int s = graph.nodeId(start);
+        int t = graph.nodeId(goal);
+        if (s < 0 || t < 0) {
+        	return result; // node is no longer part of the road network
+        }
 
-        AStarNodeWrapper startNode = new AStarNodeWrapper(start);
-        AStarNodeWrapper goalNode = new AStarNodeWrapper(goal);
-        foundNodes.put(start, startNode);
-        foundNodes.put(goal, goalNode);
+        int x = search(s, t, false);
+        if (x == t) {
+            return reconstructPath(t);
+        }
+        return result;
+    }
+
+
+
+    /**
+     * Repairs a path that was cut by road network damage instead of searching again from scratch.
+     *   The search runs toward the goal like astarPath but stops at the first node it takes off the
+     *   open set that lies on the still usable end of the old path, then follows the old path from there.
+     *   It never expands more nodes than a full search would. The result can be longer than a fresh
+     *   shortest path, the way a driver detours around a closed road and then rejoins the planned route.
+     * @param start
+     * @param goal
+     * @param remaining rest of the old path in travel order, each edge directed the way it is traveled
+     * @return the repaired path, empty if the goal is cut off, null if none of the old path can be reused
+     */
+    public ArrayList<GeomPlanarGraphDirectedEdge> repairPath(Node start, Node goal,
+    		ArrayList<GeomPlanarGraphDirectedEdge> remaining) {
 
-        startNode.gx = 0;
-        startNode.hx = heuristic(start, goal);
-        startNode.fx = startNode.hx; // Alex Freedman code contribution
+        ArrayList<GeomPlanarGraphDirectedEdge> result =
+            new ArrayList<GeomPlanarGraphDirectedEdge>();
+
+        int s = graph.nodeId(start);
+        int t = graph.nodeId(goal);
+        if (s < 0 || t < 0) {
+        	return result; // node is no longer part of the road network
+        }
+
+        // the reusable part of the old path is the longest run of surviving edges that ends at the goal
+        int size = (remaining == null) ? 0 : remaining.size();
+        int[] slots = new int[size];
+        int first = size;
+        if (size > 0 && remaining.get(size - 1).getToNode() == goal) {
+        	while (first > 0) {
+        		int e = graph.slotOf(remaining.get(first - 1));
+        		if (e < 0) {
+        			break;
+        		}
+        		slots[first - 1] = e;
+        		first--;
+        	}
+        }
+        if (first == size) {
+            return null; // nothing to reuse, the caller runs a full search
+        }
+
+        // mark where each node of the reusable part sits on the old path; the goal sits at its end
+        searchStamp++;
+        for (int i = first; i < size; i++) {
+        	int n = graph.edgeFrom[slots[i]];
+        	targetStamp[n] = searchStamp;
+        	targetIndex[n] = i;
+        }
+        targetStamp[t] = searchStamp;
+        targetIndex[t] = size;
+
+        int x = search(s, t, true);
+        if (x < 0) {
+        	return result; // the goal is cut off from the start
+        }
+        result = reconstructPath(x);
+        for (int i = targetIndex[x]; i < size; i++) {
+        	result.add(graph.dirEdges[slots[i]]);
+        }
+        return result;
+    }
+
+
+
+    /**
+     * Runs the search from s toward t
+     * @param s start node id
+     * @param t goal node id
+     * @param repair also stop at nodes marked as targets of the current repair
+     * @return the node id the search stopped at, -1 if it ran out of reachable nodes
+     */
+    private int search(int s, int t, boolean repair) {
+
+        // start a new search: state left by earlier searches is stale
+        if (!repair) {
+        	searchStamp++;
+        }
+        insertCount = 0;
+        heapSize = 0;
+        expanded = 0;
 
-        // A* containers: nodes to be investigated, nodes that have been investigated
-        ArrayList<AStarNodeWrapper> closedSet = new ArrayList<AStarNodeWrapper>(),
-            openSet = new ArrayList<AStarNodeWrapper>();
-        openSet.add(startNode);
+        touch(s);
+        gx[s] = 0;
+        hx[s] = heuristic(s, t);
+        fx[s] = hx[s]; // Alex Freedman code contribution
 
+        // A* containers: the open set is the heap, the closed set is a flag per node
+        push(s);
 
-        while (openSet.size() > 0) {
+        while (heapSize > 0) {
         	// while there are reachable nodes to investigate
 
-            AStarNodeWrapper x = findMin(openSet); // find the shortest path so far
-            if (x.node == goal) { 
+            int x = pop(); // find the shortest path so far
+            expanded++;
+            if (x == t || (repair && targetStamp[x] == searchStamp)) { 
             	// we have found the shortest possible path to the goal!
-                // Reconstruct the path and send it back.
-                return reconstructPath(goalNode);
+                return x;
             }
-            openSet.remove(x); // maintain the lists
-            closedSet.add(x);
+            closed[x] = true;
 
             // check all the edges out from this Node
-            DirectedEdgeStar des = x.node.getOutEdges();
-            for (Object o : des.getEdges().toArray()) {
+            for (int e = graph.outStart[x]; e < graph.outStart[x + 1]; e++) {
             	
-                GeomPlanarGraphDirectedEdge l = (GeomPlanarGraphDirectedEdge) o;
-                Node next = null;
-                next = l.getToNode();
-
-                // get the A* meta information about this Node
-                AStarNodeWrapper nextNode;
-                if (foundNodes.containsKey(next)) {
-                    nextNode = foundNodes.get(next);
-                    
-                } else {
-                    nextNode = new AStarNodeWrapper(next);
-                    foundNodes.put(next, nextNode);
-                }
+                int next = graph.edgeTo[e];
+                touch(next);
 
-                if (closedSet.contains(nextNode)) { // it has already been considered
+                if (closed[next]) { // it has already been considered
                     continue;
                 }
 
                 // otherwise evaluate the cost of this node/edge combo
-                double tentativeCost = x.gx + length(l);
-                boolean better = false;
-
-                if (!openSet.contains(nextNode)) {
-                    openSet.add(nextNode);
-                    nextNode.hx = heuristic(next, goal);
-                    better = true;
-                    
-                } else if (tentativeCost < nextNode.gx) {
-                    better = true;
+                double tentativeCost = gx[x] + cost(e);
+                if (tentativeCost == Double.POSITIVE_INFINITY) {
+                    continue; // edge can't be traveled
                 }
 
-                // store A* information about this promising candidate node
-                if (better) {
-                    nextNode.cameFrom = x;
-                    nextNode.edgeFrom = l;
-                    nextNode.gx = tentativeCost;
-                    nextNode.fx = nextNode.gx + nextNode.hx;
+                if (heapIndex[next] < 0) {
+                    hx[next] = heuristic(next, t);
+                    cameFrom[next] = e;
+                    gx[next] = tentativeCost;
+                    fx[next] = gx[next] + hx[next];
+                    push(next);
+                    
+                } else if (tentativeCost < gx[next]) {
+                    // store A* information about this promising candidate node
+                    cameFrom[next] = e;
+                    gx[next] = tentativeCost;
+                    fx[next] = gx[next] + hx[next];
+                    siftUp(heapIndex[next]);
                 }
             }
         }
 
-        return result;
+        return -1;
+    }
+
+
+
+    @Override
+    public ArrayList<GeomPlanarGraphDirectedEdge> findPath(Node start, Node goal) {
+        return astarPath(start, goal);
+    }
+
+
+
+    /**
+     * Resets the search state of a node the first time the current search reaches it
+     * @param n node id
+     */
+    private void touch(int n) {
+        if (stamp[n] != searchStamp) {
+            stamp[n] = searchStamp;
+            gx[n] = 0;
+            hx[n] = 0;
+            fx[n] = 0;
+            cameFrom[n] = -1;
+            heapIndex[n] = -1;
+            closed[n] = false;
+        }
     }
 
 
@@ -126,15 +288,16 @@ public class AStar {
      * @return an ArrayList of GeomPlanarGraphDirectedEdges that lead from the
      * given Node to the Node from which the search began
      */
-    ArrayList<GeomPlanarGraphDirectedEdge> reconstructPath(AStarNodeWrapper n) {
+    ArrayList<GeomPlanarGraphDirectedEdge> reconstructPath(int n) {
         ArrayList<GeomPlanarGraphDirectedEdge> result =
             new ArrayList<GeomPlanarGraphDirectedEdge>();
-        AStarNodeWrapper x = n;
+        int x = n;
         
-        while (x.cameFrom != null) {
-            result.add(0, x.edgeFrom); // add this edge to the front of the list
-            x = x.cameFrom;
+        while (cameFrom[x] >= 0) {
+            result.add(graph.dirEdges[cameFrom[x]]);
+            x = graph.edgeFrom[cameFrom[x]];
         }
+        Collections.reverse(result); // edges were collected from the goal back to the start
 
         return result;
     }
@@ -142,17 +305,33 @@ public class AStar {
     
 
     /**
-     * Measure of the estimated distance between two Nodes. Extremely basic, just
-     * Euclidean distance as implemented here.
-     * @param x
-     * @param y
+     * Measure of the estimated distance between two Nodes. Euclidean distance, raised
+     * to the landmark (ALT) lower bound when a landmark table is set; both never
+     * overestimate, so the larger one is still admissible. Under congestion routing
+     * the distance is turned into the least time it could take.
+     * @param x node id
+     * @param y node id
      * @return notional "distance" between the given nodes.
      */
-    double heuristic(Node x, Node y) {
-        Coordinate xnode = x.getCoordinate();
-        Coordinate ynode = y.getCoordinate();
-        return Math.sqrt(Math.pow(xnode.x - ynode.x, 2)
-            + Math.pow(xnode.y - ynode.y, 2));
+    double heuristic(int x, int y) {
+        double h = graph.distance(x, y);
+        if (landmarks != null) {
+            h = Math.max(h, landmarks.lowerBound(x, y));
+        }
+        if (traffic != null) {
+            h *= traffic.scale; // no edge costs less per degree than this
+        }
+        return h;
+    }
+
+
+
+    /**
+     * @param e slot
+     * @return cost of the edge: straight line length, or travel time under congestion routing
+     */
+    double cost(int e) {
+        return (traffic == null) ? graph.edgeLength[e] : traffic.cost[e];
     }
 
 
@@ -171,50 +350,70 @@ public class AStar {
 
 
     /**
-     *  Considers the list of Nodes open for consideration and returns the node
-     *  with minimum fx value
-     * @param set list of open Nodes
-     * @return
+     *  Heap order matches the old linear scan over the open list: lowest fx
+     *  first, and among equal fx the node that was opened first
+     * @param a node id
+     * @param b node id
+     * @return true if a should leave the open set before b
      */
-    AStarNodeWrapper findMin(ArrayList<AStarNodeWrapper> set) {
-        double min = 100000;
-        AStarNodeWrapper minNode = null;
-        
-        for (AStarNodeWrapper n : set) {
-            if (n.fx < min) {
-                min = n.fx;
-                minNode = n;
-            }
+    private boolean before(int a, int b) {
+        if (fx[a] != fx[b]) {
+            return fx[a] < fx[b];
         }
-        return minNode;
+        return order[a] < order[b];
     }
 
+    private void push(int n) {
+        order[n] = insertCount++;
+        heapIndex[n] = heapSize;
+        heap[heapSize++] = n;
+        siftUp(heapIndex[n]);
+    }
 
+    private int pop() {
+        int min = heap[0];
+        heapSize--;
+        if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapIndex[heap[0]] = 0;
+            siftDown(0);
+        }
+        heapIndex[min] = -1;
+        return min;
+    }
 
-    /**
-     * A wrapper to contain the A* meta information about the Nodes
-     *
-     */
-    class AStarNodeWrapper {
-
-        // the underlying Node associated with the metainformation
-        Node node;
-        // the Node from which this Node was most profitably linked
-        AStarNodeWrapper cameFrom;
-        // the edge by which this Node was discovered
-        GeomPlanarGraphDirectedEdge edgeFrom;
-        double gx, hx, fx;
-
-
-
-        public AStarNodeWrapper(Node n) {
-            node = n;
-            gx = 0;
-            hx = 0;
-            fx = 0;
-            cameFrom = null;
-            edgeFrom = null;
+    private void siftUp(int i) {
+        int n = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (!before(n, heap[parent])) {
+                break;
+            }
+            heap[i] = heap[parent];
+            heapIndex[heap[i]] = i;
+            i = parent;
         }
+        heap[i] = n;
+        heapIndex[n] = i;
+    }
 
+    private void siftDown(int i) {
+        int n = heap[i];
+        int half = heapSize >> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < heapSize && before(heap[right], heap[child])) {
+                child = right;
+            }
+            if (!before(heap[child], n)) {
+                break;
+            }
+            heap[i] = heap[child];
+            heapIndex[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = n;
+        heapIndex[n] = i;
     }
-}
\ No newline at end of file
+}
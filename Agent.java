@@ -9,19 +9,15 @@ package disaster;
 // Class imports
 import sim.engine.SimState;
 import sim.engine.Steppable;
-import sim.field.geo.GeomVectorField;
 
-import sim.util.Bag;
-import sim.util.geo.GeomPlanarGraph;
 import sim.util.geo.GeomPlanarGraphDirectedEdge;
 import sim.util.geo.GeomPlanarGraphEdge;
 import sim.util.geo.MasonGeometry;
-import sim.util.geo.PointMoveTo;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import com.vividsolutions.jts.geom.*;
-import com.vividsolutions.jts.linearref.LengthIndexedLine;
 import com.vividsolutions.jts.planargraph.Node;
 
 
@@ -31,9 +27,11 @@ import com.vividsolutions.jts.planargraph.Node;
  *  roadnetwork using an AStar Algorithm
  *  This superclass of human agents is the parent to
  *  Indv and Group subclasses
+ *  Agents are plain Steppables: time and randomness come from the one World (state),
+ *  so an agent no longer carries a SimState of its own (random generator, schedule, etc.)
  */
 @SuppressWarnings("restriction")
-public class Agent extends SimState implements Steppable {
+public class Agent implements Steppable {
 
     public static final long serialVersionUID = -1113018274619047013L;
     
@@ -64,12 +62,14 @@ public class Agent extends SimState implements Steppable {
 	//  private Point location;
 	private MasonGeometry location;
     Coordinate currentCoord = null;
+    private Coordinate ownCoord = null;  // position the agent moves in place, see moveOwnCoord
     Coordinate lastCoord1 = null;
     Coordinate lastCoord2 = null;
 	
 	// Used by agent to walk along line segment
     double distMoved = 0.0;  // tracks the distance an agent travels on the network each step -- called in progress
-	protected LengthIndexedLine segment = null;
+	protected EdgeGeometry segment = null;  // geometry of the current edge, positions on it in km
+	int segmentHint = 0;  // segment of the edge geometry at currentIndex
 	double startIndex = 0.0; // start position of current line
 	double endIndex = 0.0; // end position of current line
 	double currentIndex = 0.0; // current location along line
@@ -79,25 +79,39 @@ public class Agent extends SimState implements Steppable {
 	int linkDirection = 1;
 	double speed = 0; // used for network travel
 	boolean pathset = false; // whether agent has a path to travel
-	ArrayList<GeomPlanarGraphDirectedEdge> currentPath = // path agent travels
-			new ArrayList<GeomPlanarGraphDirectedEdge>();
+	List<GeomPlanarGraphDirectedEdge> currentPath = CompactPath.EMPTY; // path agent travels, shared, see CompactPath
 	int indexOnPath = 0;  // index of which edge on the path
 	int pathDirection = 1;
 	boolean reachedDestination = false;
-	PointMoveTo pointMoveTo = new PointMoveTo();
 	int pathLength = 0;
 	int disconnectedPaths = 0;
+	
+	// proximity grid holding this agent, with its cell and slot there
+	AgentGrid grid = null;
+	long gridCell;
+	int gridSlot;
+
+	// display field holding this agent, with the envelope it is indexed under there
+	AgentField field = null;
+	Envelope indexEnvelope;
+	boolean indexDirty = false;
+
+	// behavior state and its registry in the BehaviorScheduler, if the agent is scheduled there
+	BehaviorScheduler behaviors = null;
+	Behavior behavior = null;
+	int behaviorSlot;
+	long queuedStep = -1;  // last step the agent was queued to step
 
 	// Path handling
-	ArrayList<ArrayList<GeomPlanarGraphDirectedEdge>> multiPath = // list of paths
-			new ArrayList<ArrayList<GeomPlanarGraphDirectedEdge>>();
+	ArrayList<List<GeomPlanarGraphDirectedEdge>> multiPath = // list of paths
+			new ArrayList<List<GeomPlanarGraphDirectedEdge>>();
 	int multipathDirection = 1; // used for multipath travel
 	int multipathIndex = 0; // index of multiPath; tracks which path agent is on
 	boolean reachedFinalDestination = false; // used for multipath travel
 
 	// Non-network path movement
     private double moveRateKmPerStep = 0.0;  // in units kilometers/step (minute)
-	GeometryFactory fact = new GeometryFactory();	// used to create points for movement
+	static final GeometryFactory fact = new GeometryFactory();	// used to create points for movement
 	// methods using these attributes are Indv, and Group classes for the reroute, gotoDetour and Detour methods
 	// a basic reroute method for the parent Agent class still needs to be written
 	boolean needReroute = false; // used to indicate the agent needs to find a new path
@@ -108,12 +122,12 @@ public class Agent extends SimState implements Steppable {
     /** 
 	 *	Agent Getters and Setters
      */
-    public void setHealthStatus(int x) 	{ this.healthStatus = x; }
-	public void setGoal(String x)		{ this.goal = x; }
+    public void setHealthStatus(int x) 	{ this.healthStatus = x; behaviorChanged(); }
+	public void setGoal(String x)		{ this.goal = x; behaviorChanged(); }
 	public void setGoalNode(Node x)		{ this.goalNode = x; }
 	public void setGoalPoint(Coordinate x) { this.goalPoint = x; }
 	public void setLocation(MasonGeometry x) { this.location = x; }
-	public void setSegment(LengthIndexedLine x) { this.segment = x; }
+	public void setSegment(EdgeGeometry x) { this.segment = x; }
     public void setID(String x)			{ this.agentID = x; }
     public void setStartID(String x)	{ this.startID = x; }
     public void setEndID(String x)		{ this.endID = x; }
@@ -132,7 +146,7 @@ public class Agent extends SimState implements Steppable {
     public Node getGoalNode()			{ return this.goalNode; } // used for temp nonroutine goals, e.g. not the homeNode
     public Coordinate getGoalPoint()	{ return this.goalPoint; }
     public MasonGeometry getLocation()	{ return this.location; }
-    public LengthIndexedLine getSegment()	{ return this.segment; }
+    public EdgeGeometry getSegment()	{ return this.segment; }
     public String getID()     			{ return this.agentID; }
     public String getStartID() 			{ return this.startID; }
     public String getEndID() 			{ return this.endID; }
@@ -150,14 +164,29 @@ public class Agent extends SimState implements Steppable {
 	/**
 	 * Basic Constructor Method
 	 * @param world
-	 * @param seed
 	 */
-    public Agent(World world, long seed) {
-    		super(seed);
+    public Agent(World world) {
     		state = world;
     }
     
     
+    /**
+     * Behavior state of the agent, see Indv.findBehavior and Group.findBehavior
+     * @return COMMUTING, the basic agent walks every step
+     */
+    Behavior findBehavior() {
+    	return Behavior.COMMUTING;
+    }
+
+
+    /** re-files the agent under its behavior state, called by the setters the state depends on */
+    void behaviorChanged() {
+    	if (behaviors != null) {
+    		behaviors.update(this);
+    	}
+    }
+
+
     /** 
      * In basic agent class, agent step moves the agent 
      * with random direction coordinate values
@@ -186,8 +215,8 @@ public class Agent extends SimState implements Steppable {
     	
     	if ( getGoalPoint() == null ) {
     		// pick a new goal coordinate
-    		double xcoord = random.nextDouble() * state.censusTracts.getWidth();
-    		double ycoord = random.nextDouble() * state.censusTracts.getHeight(); 		
+    		double xcoord = state.random.nextDouble() * state.censusTracts.getWidth();
+    		double ycoord = state.random.nextDouble() * state.censusTracts.getHeight(); 		
     		setGoalPoint(new Coordinate(xcoord,ycoord));		   		
     	}
     	
@@ -196,8 +225,8 @@ public class Agent extends SimState implements Steppable {
     	
     	else {
     		// set new GoalPoint
-    		double xcoord = random.nextDouble() * state.censusTracts.getWidth();
-    		double ycoord = random.nextDouble() * state.censusTracts.getHeight(); 		
+    		double xcoord = state.random.nextDouble() * state.censusTracts.getWidth();
+    		double ycoord = state.random.nextDouble() * state.censusTracts.getHeight(); 		
     		setGoalPoint(new Coordinate(xcoord,ycoord));
     	}
     	
@@ -209,7 +238,7 @@ public class Agent extends SimState implements Steppable {
      * @return
      */
     public boolean setMultiPath() {
-    	ArrayList<GeomPlanarGraphDirectedEdge> path = // path agent travels; local variable
+    	List<GeomPlanarGraphDirectedEdge> path = // path agent travels; local variable
     			new ArrayList<GeomPlanarGraphDirectedEdge>();
  	   	this.lastCoord1 = this.currentCoord;
  	   	this.lastCoord2 = this.currentCoord;
@@ -242,7 +271,7 @@ public class Agent extends SimState implements Steppable {
      * @param multiPath
      * @return
      */
-    public boolean beginMultiPath(ArrayList<ArrayList<GeomPlanarGraphDirectedEdge>> multiPath) {
+    public boolean beginMultiPath(ArrayList<List<GeomPlanarGraphDirectedEdge>> multiPath) {
         // if the multipath works, lay it in
     	// set destination booleans
     	reachedDestination = false;
@@ -335,7 +364,7 @@ public class Agent extends SimState implements Steppable {
     * @param goal node
     * @return path
     */
-   public ArrayList<GeomPlanarGraphDirectedEdge> findNewAStarPath(Node startNode, Node endNode)
+   public List<GeomPlanarGraphDirectedEdge> findNewAStarPath(Node startNode, Node endNode)
    {   
        // get the home and work Nodes with which this Agent is associated
        Node currentJunction = startNode;
@@ -345,10 +374,9 @@ public class Agent extends SimState implements Steppable {
        {
            return null; // just a check
        }
-       // find the appropriate A* path between them
-       AStar pathfinder = new AStar();
-       ArrayList<GeomPlanarGraphDirectedEdge> path =
-           pathfinder.astarPath(currentJunction, destinationJunction);
+       // find the appropriate A* path between them, reusing one already found if possible
+       List<GeomPlanarGraphDirectedEdge> path =
+           state.pathCache.findPath(state, currentJunction, destinationJunction);
 
        // if the path works, return it
        if (path != null && path.size() > 0) {
@@ -361,14 +389,83 @@ public class Agent extends SimState implements Steppable {
 
    }
 
+
+   /**
+    * Plots a path to the goal after road network damage, reusing what is left of currentPath
+    * when it still leads to the goal; otherwise plots a new path as findNewAStarPath does
+    * @param startNode
+    * @param endNode
+    * @return path
+    */
+   public List<GeomPlanarGraphDirectedEdge> findRepairedPath(Node startNode, Node endNode)
+   {
+       if (startNode == null)
+       {
+           return null; // just a check
+       }
+
+       // edges still ahead of the agent on its old path, in travel order
+       ArrayList<GeomPlanarGraphDirectedEdge> remaining = new ArrayList<GeomPlanarGraphDirectedEdge>();
+       if (currentPath != null) {
+    	   if (pathDirection > 0) {
+    		   for (int i = Math.max(indexOnPath + 1, 0); i < currentPath.size(); i++) {
+    			   remaining.add(currentPath.get(i));
+    		   }
+    	   }
+    	   else {
+    		   for (int i = Math.min(indexOnPath, currentPath.size()) - 1; i >= 0; i--) {
+    			   remaining.add((GeomPlanarGraphDirectedEdge) currentPath.get(i).getSym());
+    		   }
+    	   }
+       }
+
+       List<GeomPlanarGraphDirectedEdge> path = state.pathfinder.repairPath(startNode, endNode, remaining);
+       if (path == null) {
+    	   Log.routesRecomputed += 1;
+    	   return findNewAStarPath(startNode, endNode);
+       }
+
+       Log.routesRepaired += 1;
+       if (path.size() > 0) {
+    	   setPathLength(path.size());
+    	   return CompactPath.of(path, state.edgeAttributes);
+       }
+       else {
+    	   return null;
+       }
+   }
+
+
+   /**
+    * Reads the path from a node to the closest exit outside the damage area from the
+    * evacuation table built at detonation; the exit is the end node of the last edge
+    * @param startNode
+    * @return path, or null if there is no table, no reachable exit, or the node is an exit
+    */
+   public List<GeomPlanarGraphDirectedEdge> findEvacuationPath(Node startNode)
+   {
+       if (startNode == null || state.evacuation == null)
+       {
+           return null;
+       }
+       List<GeomPlanarGraphDirectedEdge> path = state.evacuation.pathToExit(startNode);
+       if (path != null && path.size() > 0) {
+    	   setPathLength(path.size());
+    	   return CompactPath.of(path, state.edgeAttributes);
+       }
+       else {
+    	   return null;
+       }
+   }
+
    
    /**
     * Set up agent to begin agent traveling on a path
     * @param World
-    * @param ArrayList<GeomPlanarGraphDirectedEdge>
+    * @param List<GeomPlanarGraphDirectedEdge>
     * @return Boolean True if there is a valid path and the agent is set up
     */
-   public boolean beginPath (ArrayList<GeomPlanarGraphDirectedEdge> path) {
+   public boolean beginPath (List<GeomPlanarGraphDirectedEdge> path) {
        // if the path works, lay it in
        if (path != null && path.size() > 0)
        {  		
@@ -381,7 +478,7 @@ public class Agent extends SimState implements Steppable {
 	        setupEdge(edge);
 	
 	        // update the current position for this link
-	        updatePosition(segment.extractPoint(currentIndex));
+	        updatePosition(extractPoint(currentIndex));
 	                 
 	        return true;
     	   }
@@ -394,7 +491,7 @@ public class Agent extends SimState implements Steppable {
    	        setupEdge(edge);
    	
    	        // update the current position for this link
-   	        updatePosition(segment.extractPoint(currentIndex));
+   	        updatePosition(extractPoint(currentIndex));
    	              
    	        return true;  
     	   }
@@ -443,8 +540,7 @@ public class Agent extends SimState implements Steppable {
 			   double moveCoordLong = ( speed * longDist / distToCoord ) + currLong;
 			   double moveCoordLat = ( speed * latDist / distToCoord ) + currLat;
 		   
-			   Coordinate tempCoord = new Coordinate(moveCoordLong, moveCoordLat);
-			   currentCoord = tempCoord;
+			   currentCoord = moveOwnCoord(moveCoordLong, moveCoordLat);
 			   updatePosition(currentCoord);
 		   }
 		   
@@ -485,9 +581,9 @@ public class Agent extends SimState implements Steppable {
        long currentStep = this.state.schedule.getSteps();
 
 	   // get traffic data
-	   double edgeTrafficsize = this.state.edgeTraffic.get(currentEdge).size();
-	   double edgeDistance = this.state.edgesToDistance.get(currentEdge);
-	   double speedLimit = this.state.edgesToSpeedLimit.get(currentEdge);
+	   double edgeTrafficsize = this.state.edgeTraffic.get(currentEdge);
+	   double edgeDistance = this.state.edgeAttributes.km(currentEdge);
+	   double speedLimit = this.state.edgeAttributes.speedLimit(currentEdge);
 	   double moveRate = speedLimit / 60;  // (n kilometers / 60 steps) to get km/step
 	   
 	   // if agent gets stuck because edge is impassable
@@ -514,13 +610,13 @@ public class Agent extends SimState implements Steppable {
        // check to see if the progress has taken the current index beyond its goal
        // given the direction of movement. If so, proceed to the next edge
        if (linkDirection == 1 && currentIndex > endIndex) {
-           currentCoord = segment.extractPoint(endIndex);
+           currentCoord = moveOwnCoord(endIndex);
            transitionToNextEdge(edgeTrafficsize, edgeDistance, currentIndex - endIndex);
        } else if (linkDirection == -1 && currentIndex < startIndex) {
-           	currentCoord = segment.extractPoint(startIndex);
+           	currentCoord = moveOwnCoord(startIndex);
            	transitionToNextEdge(edgeTrafficsize, edgeDistance, startIndex - currentIndex);
        } else { // just update the position!
-    	   currentCoord = segment.extractPoint(currentIndex);
+    	   currentCoord = moveOwnCoord(currentIndex);
        }
        updatePosition(currentCoord);  // updates Group location
 
@@ -645,7 +741,7 @@ public class Agent extends SimState implements Steppable {
        
        else  {
     	   // just update the position
-	          currentCoord = segment.extractPoint(currentIndex);
+	          currentCoord = moveOwnCoord(currentIndex);
 	          updatePosition(currentCoord);
        }
 
@@ -661,57 +757,11 @@ public class Agent extends SimState implements Steppable {
    /**
     * Find and return nearest road network node
     * @param point
-    * @param nodefield
-    * @param roadNet
-    * @param startDistance
     * @return
     */
-   public static Node findNearestNode(MasonGeometry point, GeomVectorField nodefield, GeomPlanarGraph roadNet, double startDistance) {
-	   Bag candidates = nodefield.getGeometries(); //world.roadIntersections.getGeometries();
-	   double dist = startDistance;
-	   while (true) {
-		   // simply increase or decrease distance to find an appropriate number of candidates
-		   candidates = nodefield.getObjectsWithinDistance(point, dist);  //world.roadIntersections.getObjectsWithinDistance(point, dist);
-		   if (candidates.size() == 0) {
-			   dist *= 10;
-		   }
-		   else if (candidates.size() > 3) {
-			   dist *= 0.5;			   
-		   }
-		   else { break; }	   
-	   }
-	   
-	   double minDist = Double.MAX_VALUE;
-	   MasonGeometry nearest = null;
-	   // refinement step: now it's time to find the nearest among candidates
-	   for (Object ele : candidates) {
-		   MasonGeometry geo = (MasonGeometry) ele;
-		   double tmp = geo.geometry.distance(point.geometry);
-		   if (minDist > tmp) {
-			   nearest = geo;
-			   minDist = tmp;
-		   }
-	   }
-	   
-	   Bag nearestNodes = nodefield.getCoveredObjects(nearest); 
-	   MasonGeometry nearestObj = (MasonGeometry) nearestNodes.get(0);
-	   Coordinate nearestNodeCoord = nearestObj.geometry.getCoordinate();
-	   
-	   Node nearestNode = null; 
-	   
-       Iterator<?> nodeIterator = roadNet.nodeIterator();
-       
-       while (nodeIterator.hasNext())
-       {
-       	// Create a GeometryVectorField of points representing road intersections
-           Node node = (Node) nodeIterator.next();
-           Coordinate coord = node.getCoordinate();
-           if (nearestNodeCoord == coord) {
-        	   nearestNode = node;
-           }
-       }
-
-       return nearestNode;
+   public Node findNearestNode(MasonGeometry point) {
+	   Coordinate c = point.geometry.getCoordinate();
+	   return state.nodeIndex.nearest(c.x, c.y, null);
    }
    
    
@@ -720,7 +770,7 @@ public class Agent extends SimState implements Steppable {
     * @param path
     * @return distance in kilometers
     */
-   public double getpathDistance (ArrayList<GeomPlanarGraphDirectedEdge> path) {
+   public double getpathDistance (List<GeomPlanarGraphDirectedEdge> path) {
 	   
   		double distance = 0;
 
@@ -739,7 +789,7 @@ public class Agent extends SimState implements Steppable {
     * @param path
     * @return GoalNode
     */
-   public Node getGoalNode (ArrayList<GeomPlanarGraphDirectedEdge> path) {
+   public Node getGoalNode (List<GeomPlanarGraphDirectedEdge> path) {
 	   ;
        if (path.size() == 1) {
 	   		Node lastNode = path.get(0).getToNode();
@@ -765,7 +815,7 @@ public class Agent extends SimState implements Steppable {
     * @param path
     * @return StartNode
     */
-   public Node getPathStartNode (ArrayList<GeomPlanarGraphDirectedEdge> path) {
+   public Node getPathStartNode (List<GeomPlanarGraphDirectedEdge> path) {
        if (path.size() >= 1) {
 	   		Node firstNode = path.get(0).getFromNode();
 
@@ -783,7 +833,7 @@ public class Agent extends SimState implements Steppable {
     * @param path
     * @return EndNode
     */
-   public Node getPathEndNode (ArrayList<GeomPlanarGraphDirectedEdge> path) {
+   public Node getPathEndNode (List<GeomPlanarGraphDirectedEdge> path) {
 	   int pathSize = path.size() - 1;
 	   Node lastNode = null;
        if (path != null) {
@@ -800,56 +850,127 @@ public class Agent extends SimState implements Steppable {
     */
    void setupEdge(GeomPlanarGraphEdge edge)
    {
-       // clean up on old edge -- take agent off the edge
-       if (currentEdge != null) {
-           ArrayList<Agent> traffic = state.edgeTraffic.get(currentEdge);
-           traffic.remove(this);
-       }
-       
+       // take agent off the old edge and count it on the new one
+       state.edgeTraffic.move(currentEdge, edge);
        currentEdge = edge;
-       
-       // update new edge traffic
-       if (this.state.edgeTraffic.get(currentEdge) == null) {
-           this.state.edgeTraffic.put(currentEdge, new ArrayList<Agent>());
-       }
-
-       this.state.edgeTraffic.get(currentEdge).add(this);
 
        // set up the new segment and index info
-       LineString line = null;
        // post-impact some edges are destroyed, agents needs a reroute
-       // if there is no line, reroute, else get the line
-       if (edge.getLine() == null) {
+       // if there is no line, reroute, else get the line's geometry
+       EdgeGeometry line = state.edgeAttributes.geometry(edge);
+       if (line == null) {
     	   setneedReroute(true);
     	   
     	   return;
        }
-       else {
-    	   line = edge.getLine();
-       }
        
-       segment = new LengthIndexedLine(line);
-       startIndex = Spacetime.degToKilometers(segment.getStartIndex());
-       endIndex = Spacetime.degToKilometers(segment.getEndIndex());
+       segment = line;
+       startIndex = 0;
+       endIndex = segment.lengthKm;
        linkDirection = 1;
 
        // check to ensure that Agent is moving in the right direction
        // then set currentIndex to start of path 
        // and set the link direction
-       double distanceToStart = line.getStartPoint().distance(location.geometry),
-           distanceToEnd = line.getEndPoint().distance(location.geometry);
+       Coordinate here = location.geometry.getCoordinate();
+       double distanceToStart = segment.distanceToStart(here),
+           distanceToEnd = segment.distanceToEnd(here);
 
        if (distanceToStart <= distanceToEnd) { // closer to start
            currentIndex = startIndex;
+           segmentHint = 0;
            linkDirection = 1;
        } else if (distanceToEnd < distanceToStart) { // closer to end
            currentIndex = endIndex;
+           segmentHint = segment.lastSegment();
            linkDirection = -1;
        }
 
    }
 
 
+   /**
+    * Point on the current edge
+    * @param index kilometers from the start of the edge's line
+    * @return the point
+    */
+   Coordinate extractPoint(double index) {
+	   segmentHint = segment.segmentAt(index, segmentHint);
+	   return segment.pointAt(index, segmentHint);
+   }
+
+
+   /**
+    * Moves the agent's own coordinate to x, y in place, instead of allocating one every step
+    * Only the agent, and the members riding with a group, refer to it: anything kept after the agent
+    * moves on, such as a goal point or another agent's position, takes a copy with shareCoord()
+    * @param x
+    * @param y
+    * @return the agent's own coordinate, to set as currentCoord
+    */
+   Coordinate moveOwnCoord(double x, double y) {
+	   if (ownCoord == null) {
+		   ownCoord = new Coordinate(x, y);
+	   }
+	   else {
+		   ownCoord.x = x;
+		   ownCoord.y = y;
+	   }
+	   return ownCoord;
+   }
+
+
+   /**
+    * Moves the agent's own coordinate to a point on the current edge, see moveOwnCoord
+    * @param index kilometers from the start of the edge's line
+    * @return the agent's own coordinate, to set as currentCoord
+    */
+   Coordinate moveOwnCoord(double index) {
+	   segmentHint = segment.segmentAt(index, segmentHint);
+	   if (ownCoord == null) {
+		   ownCoord = new Coordinate();
+	   }
+	   segment.pointAt(index, segmentHint, ownCoord);
+	   return ownCoord;
+   }
+
+
+   /**
+    * @return currentCoord for another agent or a goal point to keep, copied if it is the agent's own
+    *  coordinate, which moves with the agent
+    */
+   Coordinate shareCoord() {
+	   if ((currentCoord != null) && (currentCoord == ownCoord)) {
+		   return new Coordinate(currentCoord);
+	   }
+	   return currentCoord;
+   }
+
+
+   /**
+    * @param c
+    * @return distance in degrees from the agent's location to c, without the JTS Point and DistanceOp
+    *  objects Geometry.distance creates
+    */
+   double distanceTo(Coordinate c) {
+	   return location.geometry.getCoordinate().distance(c);
+   }
+
+
+   /**
+    * @param x
+    * @param y
+    * @param c
+    * @return distance in degrees from x, y to c, as Coordinate.distance finds it, for test positions
+    *  that need no Coordinate of their own
+    */
+   static double distance(double x, double y, Coordinate c) {
+	   double dx = x - c.x;
+	   double dy = y - c.y;
+	   return Math.sqrt(dx * dx + dy * dy);
+   }
+
+
    /** 	
     * move the agent to the given coordinates 
     * @param world 
@@ -859,13 +980,26 @@ public class Agent extends SimState implements Steppable {
 	   this.lastCoord2 = this.lastCoord1;
 	   this.lastCoord1 = this.currentCoord; // used to check movement
 
-       pointMoveTo.setCoordinate(c);
-       location.geometry.apply(pointMoveTo);
+       // the point's own coordinate is set in place, see moveOwnCoord
+       Coordinate here = location.geometry.getCoordinate();
+       boolean moved = !c.equals2D(here);
+       here.x = c.x;
+       here.y = c.y;
        
        // Courtesy of Joonseok Kim:
        // geometryChanged() is added to fix display bug...it ensures the agent position is updated properly
-       location.geometry.geometryChanged(); 
+       // An agent in a field has its cached envelope refreshed when the field re-indexes it, see
+       // AgentField.updateSpatialIndex, so a move between index updates creates no new Envelope
+       if (field == null) {
+    	   location.geometry.geometryChanged();
+       }
 
+       if (grid != null) {
+    	   grid.moved(this, c);
+       }
+       if (field != null && moved) {
+    	   field.moved(this);
+       }
    }
 
 
@@ -885,7 +1019,7 @@ public class Agent extends SimState implements Steppable {
     * Returns the first and last node coordinates of a given path
     * @param path
     */
-   public void ckPathNodes(ArrayList<GeomPlanarGraphDirectedEdge> path) {
+   public void ckPathNodes(List<GeomPlanarGraphDirectedEdge> path) {
 	   int lastIndex = path.size() - 1;
    }
 
@@ -894,7 +1028,7 @@ public class Agent extends SimState implements Steppable {
     * @param path
     * @return
     */
-   public boolean ckPath(ArrayList<GeomPlanarGraphDirectedEdge> path) {
+   public boolean ckPath(List<GeomPlanarGraphDirectedEdge> path) {
 	   int lastIndex = path.size() - 1;
 	   int currentIndex = 0;
 	   boolean goodPath = true;
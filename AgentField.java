@@ -0,0 +1,136 @@
+/**
+ *  Disaster ABM in MASON
+ *  Aug2020
+ */
+
+package disaster;
+
+// Class imports
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.index.quadtree.Quadtree;
+import java.util.ArrayList;
+import java.util.List;
+import sim.field.geo.GeomVectorField;
+import sim.util.Bag;
+import sim.util.geo.MasonGeometry;
+
+
+/**
+ * GeomVectorField of agents whose spatial index follows only the agents that moved
+ *   GeomVectorField.updateSpatialIndex rebuilds the whole quadtree, every step, though most agents
+ *   sit at home or work most of the day. Here Agent.updatePosition marks an agent dirty when its
+ *   coordinate changes, and updateSpatialIndex (also run by scheduleSpatialIndexUpdater) moves
+ *   just the dirty agents within the field's own quadtree.
+ *   Agent.updatePosition moves an agent's point in place without dropping its cached envelope, so
+ *   the envelope is refreshed here, once per update, for just the agents re-indexed.
+ *   queryField and getObjectsWithinDistance, which the display and inspectors use, read that
+ *   quadtree; the final query methods of GeomVectorField still see agents where they were added.
+ *   Add agents with add(Agent) so their moves are tracked.
+ */
+public class AgentField extends GeomVectorField {
+
+	private static final long serialVersionUID = 1L;
+
+	private Quadtree index = new Quadtree();
+	private final ArrayList<Agent> dirty = new ArrayList<Agent>();
+	private int reindexed = 0;			// agents re-indexed by the last update
+	private long totalReindexed = 0;
+
+
+	/**
+	 * Adds the agent's geometry to the field and its index
+	 * @param a
+	 */
+	public void add(Agent a) {
+		MasonGeometry mg = a.getGeometry();
+		addGeometry(mg);
+		a.field = this;
+		mg.geometry.geometryChanged();
+		a.indexEnvelope = new Envelope(mg.geometry.getEnvelopeInternal());
+		index.insert(a.indexEnvelope, mg);
+	}
+
+
+	/**
+	 * Marks the agent for re-indexing, called by Agent.updatePosition when its coordinate changes
+	 * @param a
+	 */
+	void moved(Agent a) {
+		if (!a.indexDirty) {
+			a.indexDirty = true;
+			dirty.add(a);
+		}
+	}
+
+
+	/**
+	 * Moves the agents that changed position since the last update to their new place in the index
+	 */
+	@Override
+	public void updateSpatialIndex() {
+		for (Agent a : dirty) {
+			MasonGeometry mg = a.getGeometry();
+			index.remove(a.indexEnvelope, mg);
+			mg.geometry.geometryChanged();
+			a.indexEnvelope = new Envelope(mg.geometry.getEnvelopeInternal());
+			index.insert(a.indexEnvelope, mg);
+			a.indexDirty = false;
+		}
+		reindexed = dirty.size();
+		totalReindexed += reindexed;
+		dirty.clear();
+	}
+
+
+	@Override
+	public synchronized Bag queryField(Envelope e) {
+		List<?> found = index.query(e);
+		Bag result = new Bag(found.size());
+		for (Object o : found) {
+			MasonGeometry mg = (MasonGeometry) o;
+			if (e.intersects(mg.getGeometry().getEnvelopeInternal())) {
+				result.add(mg);
+			}
+		}
+		return result;
+	}
+
+
+	@Override
+	public Bag getObjectsWithinDistance(Geometry g, double dist) {
+		Envelope e = new Envelope(g.getEnvelopeInternal());
+		e.expandBy(dist);
+		List<?> found = index.query(e);
+		Bag result = new Bag();
+		for (Object o : found) {
+			MasonGeometry mg = (MasonGeometry) o;
+			if (mg.getGeometry().isWithinDistance(g, dist)) {
+				result.add(mg);
+			}
+		}
+		return result;
+	}
+
+
+	@Override
+	public void clear() {
+		super.clear();
+		index = new Quadtree();
+		for (Agent a : dirty) {
+			a.indexDirty = false;
+		}
+		dirty.clear();
+	}
+
+
+	/** agents re-indexed by the last update, for monitoring */
+	public int getReindexed() {
+		return reindexed;
+	}
+
+	public long getTotalReindexed() {
+		return totalReindexed;
+	}
+
+}
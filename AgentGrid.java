@@ -0,0 +1,191 @@
+/**
+ *  Disaster ABM in MASON
+ *  Aug2020
+ */
+
+package disaster;
+
+// Class imports
+import com.vividsolutions.jts.geom.Coordinate;
+import java.util.ArrayList;
+import sim.util.Bag;
+
+
+/**
+ * Spatial hash of agent positions for proximity queries, e.g. emergent group formation
+ *   Cells are Parameters.agentGridCellSize degrees (about 100 m) and are found through an open
+ *   addressing table on the primitive cell key, so agents can wander off the study area.
+ *   Agent.updatePosition moves an agent between cells in O(1), and a query only scans the cells
+ *   that overlap its radius. A cell keeps its list once emptied, so an agent moving between cells
+ *   already visited allocates nothing.
+ *   Replaces getObjectsWithinDistance on the indvs and groups fields, whose quadtrees had to be
+ *   rebuilt every step to follow the agents.
+ */
+public class AgentGrid {
+
+	private final double cellSize;
+	private final ArrayList<ArrayList<Agent>> cells = new ArrayList<ArrayList<Agent>>();
+	private long[] keys = new long[1024];	// cell key of each table slot
+	private int[] slots = new int[1024];	// index into cells + 1 of each table slot, 0 if free
+	private int size = 0;
+
+
+	/**
+	 * @param cellSize in degrees
+	 */
+	public AgentGrid(double cellSize) {
+		this.cellSize = cellSize;
+	}
+
+
+	private long cell(double x, double y) {
+		long cx = (long) Math.floor(x / cellSize);
+		long cy = (long) Math.floor(y / cellSize);
+		return (cx << 32) ^ (cy & 0xffffffffL);
+	}
+
+
+	/**
+	 * Adds the agent at its current position
+	 * @param a
+	 */
+	public void add(Agent a) {
+		Coordinate c = a.getGeometry().geometry.getCoordinate();
+		a.grid = this;
+		insert(a, cell(c.x, c.y));
+		size++;
+	}
+
+
+	/**
+	 * Moves the agent to the cell of its new position, called by Agent.updatePosition
+	 * @param a
+	 * @param c new position
+	 */
+	void moved(Agent a, Coordinate c) {
+		long to = cell(c.x, c.y);
+		if (to != a.gridCell) {
+			remove(a);
+			insert(a, to);
+		}
+	}
+
+
+	/**
+	 * @param key
+	 * @return index into keys and slots of the cell, or of the free slot it would take
+	 */
+	private int slot(long key) {
+		int mask = keys.length - 1;
+		int i = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+		while ((slots[i] != 0) && (keys[i] != key)) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+
+	/**
+	 * @param key
+	 * @return the agents of the cell, or null if no agent has been in it
+	 */
+	private ArrayList<Agent> find(long key) {
+		int i = slot(key);
+		return (slots[i] == 0) ? null : cells.get(slots[i] - 1);
+	}
+
+
+	/**
+	 * @param key
+	 * @return the agents of the cell, creating the cell on first use
+	 */
+	private ArrayList<Agent> cellOf(long key) {
+		int i = slot(key);
+		if (slots[i] != 0) {
+			return cells.get(slots[i] - 1);
+		}
+		ArrayList<Agent> list = new ArrayList<Agent>();
+		cells.add(list);
+		keys[i] = key;
+		slots[i] = cells.size();
+		if (2 * cells.size() > keys.length) {
+			grow();
+		}
+		return list;
+	}
+
+
+	// doubles the table, keeping it at most half full
+	private void grow() {
+		long[] oldKeys = keys;
+		int[] oldSlots = slots;
+		keys = new long[oldKeys.length * 2];
+		slots = new int[oldSlots.length * 2];
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldSlots[j] != 0) {
+				int i = slot(oldKeys[j]);
+				keys[i] = oldKeys[j];
+				slots[i] = oldSlots[j];
+			}
+		}
+	}
+
+
+	private void insert(Agent a, long key) {
+		ArrayList<Agent> list = cellOf(key);
+		a.gridCell = key;
+		a.gridSlot = list.size();
+		list.add(a);
+	}
+
+
+	private void remove(Agent a) {
+		// swap the last agent of the cell into the freed slot
+		// the emptied cell keeps its list for the next agent to enter
+		ArrayList<Agent> list = find(a.gridCell);
+		Agent last = list.remove(list.size() - 1);
+		if (last != a) {
+			list.set(a.gridSlot, last);
+			last.gridSlot = a.gridSlot;
+		}
+	}
+
+
+	/**
+	 * Agents within a distance of a point, the point's agent included
+	 * @param c
+	 * @param dist in degrees
+	 * @return Bag of the agents' MasonGeometry, as GeomVectorField.getObjectsWithinDistance returns
+	 */
+	public Bag getObjectsWithinDistance(Coordinate c, double dist) {
+		Bag result = new Bag();
+		long x0 = (long) Math.floor((c.x - dist) / cellSize);
+		long x1 = (long) Math.floor((c.x + dist) / cellSize);
+		long y0 = (long) Math.floor((c.y - dist) / cellSize);
+		long y1 = (long) Math.floor((c.y + dist) / cellSize);
+		for (long cx = x0; cx <= x1; cx++) {
+			for (long cy = y0; cy <= y1; cy++) {
+				ArrayList<Agent> list = find((cx << 32) ^ (cy & 0xffffffffL));
+				if (list == null) {
+					continue;
+				}
+				for (int i = 0; i < list.size(); i++) {
+					Agent a = list.get(i);
+					Coordinate p = a.getGeometry().geometry.getCoordinate();
+					double dx = p.x - c.x;
+					double dy = p.y - c.y;
+					if (dx * dx + dy * dy <= dist * dist) {
+						result.add(a.getGeometry());
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+
+	public int size() {
+		return size;
+	}
+
+}
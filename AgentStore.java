@@ -0,0 +1,242 @@
+/**
+ *  Disaster ABM in MASON
+ *  Aug2020
+ */
+
+package disaster;
+
+// Class imports
+import com.vividsolutions.jts.geom.Coordinate;
+import java.util.ArrayList;
+
+
+/**
+ * Columns of the indv state that whole-population loops read
+ *   Column i holds the position, health, dose, status flags and commute totals of the indv at
+ *   Log.indvList index i, in parallel primitive arrays, so a pass over 230k+ agents reads a few
+ *   dense arrays instead of following a pointer to every Indv.
+ *   The columns are the agents' state: a stored Indv's accessors read and write its column and its
+ *   own fields for these values are left unused. The position is the exception, the agent's
+ *   geometry stays authoritative for the GIS fields and updatePosition copies it to x, y.
+ *   Each Indv takes a column as it is constructed; once the population is final, compact() drops
+ *   the columns of discarded agents and orders the rest as Log.indvList. See Parameters.agentStore.
+ */
+public class AgentStore {
+
+	// flag bits
+	static final int DEAD		= 1;
+	static final int FIRST_RESP	= 1 << 1;
+	static final int AT_WORK	= 1 << 2;
+	static final int AT_HOME	= 1 << 3;
+	static final int ON_COMMUTE	= 1 << 4;
+	static final int FLEEING	= 1 << 5;
+	static final int IN_GROUP	= 1 << 6;
+
+	int size = 0;
+	Indv[] agents;			// the indv of each column
+	double[] x, y;			// location
+	int[] health;			// health status
+	double[] dose;
+	int[] flags;
+	byte[] vStatus;			// victim status
+	double[] commuteDist;
+	int[] commuteTime;
+
+
+	/**
+	 * @param capacity initial number of columns, grown as agents are added
+	 */
+	public AgentStore(int capacity) {
+		allocate(Math.max(capacity, 16));
+	}
+
+
+	private void allocate(int capacity) {
+		agents = new Indv[capacity];
+		x = new double[capacity];
+		y = new double[capacity];
+		health = new int[capacity];
+		dose = new double[capacity];
+		flags = new int[capacity];
+		vStatus = new byte[capacity];
+		commuteDist = new double[capacity];
+		commuteTime = new int[capacity];
+	}
+
+
+	/**
+	 * Gives a new indv its column, set to the values a new Indv starts with
+	 * @param a
+	 * @return the column
+	 */
+	int add(Indv a) {
+		if (size == agents.length) {
+			resize(2 * size);
+		}
+		int i = size++;
+		agents[i] = a;
+		Coordinate c = (a.getGeometry() == null) ? null : a.getGeometry().geometry.getCoordinate();
+		x[i] = (c == null) ? 0 : c.x;
+		y[i] = (c == null) ? 0 : c.y;
+		health[i] = -1;		// not set, as Agent.healthStatus
+		dose[i] = 0;
+		flags[i] = 0;
+		vStatus[i] = 0;
+		commuteDist[i] = 0;
+		commuteTime[i] = 0;
+		return i;
+	}
+
+
+	private void resize(int capacity) {
+		Indv[] oldAgents = agents;
+		double[] oldX = x, oldY = y, oldDose = dose, oldDist = commuteDist;
+		int[] oldHealth = health, oldFlags = flags, oldTime = commuteTime;
+		byte[] oldVStatus = vStatus;
+		allocate(capacity);
+		System.arraycopy(oldAgents, 0, agents, 0, size);
+		System.arraycopy(oldX, 0, x, 0, size);
+		System.arraycopy(oldY, 0, y, 0, size);
+		System.arraycopy(oldHealth, 0, health, 0, size);
+		System.arraycopy(oldDose, 0, dose, 0, size);
+		System.arraycopy(oldFlags, 0, flags, 0, size);
+		System.arraycopy(oldVStatus, 0, vStatus, 0, size);
+		System.arraycopy(oldDist, 0, commuteDist, 0, size);
+		System.arraycopy(oldTime, 0, commuteTime, 0, size);
+	}
+
+
+	/**
+	 * Keeps only the columns of the given agents, in their order, and moves each agent to its new column
+	 * Agents left out, i.e. discarded while the population was built, take their values back
+	 * @param indvs all indvs, in Log.indvList order
+	 */
+	void compact(ArrayList<Indv> indvs) {
+		boolean[] kept = new boolean[size];
+		for (Indv a : indvs) {
+			if (a.store == this) {
+				kept[a.slot] = true;
+			}
+		}
+		for (int j = 0; j < size; j++) {
+			if (!kept[j]) {
+				agents[j].leaveStore();
+			}
+		}
+
+		Indv[] oldAgents = agents;
+		double[] oldDose = dose, oldDist = commuteDist;
+		int[] oldHealth = health, oldFlags = flags, oldTime = commuteTime;
+		byte[] oldVStatus = vStatus;
+		size = indvs.size();
+		allocate(size);
+		for (int i = 0; i < size; i++) {
+			Indv a = indvs.get(i);
+			int old = a.slot;
+			if ((a.store != this) || (oldAgents[old] != a)) {
+				throw new IllegalStateException("AgentStore>compact>indv " + a.getID() + " is not stored");
+			}
+			agents[i] = a;
+			Coordinate c = a.getGeometry().geometry.getCoordinate();
+			x[i] = c.x;
+			y[i] = c.y;
+			health[i] = oldHealth[old];
+			dose[i] = oldDose[old];
+			flags[i] = oldFlags[old];
+			vStatus[i] = oldVStatus[old];
+			commuteDist[i] = oldDist[old];
+			commuteTime[i] = oldTime[old];
+			a.slot = i;
+		}
+		System.out.println("AgentStore>stored " + size + " indvs");
+	}
+
+
+	boolean flag(int slot, int flag) {
+		return (flags[slot] & flag) != 0;
+	}
+
+
+	void setFlag(int slot, int flag, boolean on) {
+		if (on) {
+			flags[slot] |= flag;
+		}
+		else {
+			flags[slot] &= ~flag;
+		}
+	}
+
+
+	void moved(int slot, Coordinate c) {
+		x[slot] = c.x;
+		y[slot] = c.y;
+	}
+
+
+	/**
+	 * @param px
+	 * @param py
+	 * @param radius in degrees, inclusive
+	 * @param orFlags agents with any of these flags are included at any distance
+	 * @return the living agents within radius of the point, plus those with the flags, in Log.indvList order
+	 */
+	ArrayList<Indv> aliveNear(double px, double py, double radius, int orFlags) {
+		ArrayList<Indv> found = new ArrayList<Indv>();
+		for (int i = 0; i < size; i++) {
+			if ((flags[i] & DEAD) != 0) {
+				continue;
+			}
+			double dx = x[i] - px;
+			double dy = y[i] - py;
+			if (((flags[i] & orFlags) != 0) || (Math.sqrt(dx * dx + dy * dy) <= radius)) {
+				found.add(agents[i]);
+			}
+		}
+		return found;
+	}
+
+
+	/**
+	 * Neediest unaided victim within range, the scan Indv.findNeediestVictim makes without a VictimRegistry
+	 * @param px
+	 * @param py
+	 * @param range in degrees, exclusive
+	 * @return the victim with the highest health status, the earliest on ties, or null
+	 */
+	Indv neediest(double px, double py, double range) {
+		int best = -1;
+		for (int i = 0; i < size; i++) {
+			if (((flags[i] & (DEAD | FIRST_RESP)) != 0) || (vStatus[i] != 0) || (health[i] == 0)) {
+				continue;
+			}
+			if ((best >= 0) && (health[i] <= health[best])) {
+				continue;
+			}
+			double dx = x[i] - px;
+			double dy = y[i] - py;
+			if (Math.sqrt(dx * dx + dy * dy) < range) {
+				best = i;
+			}
+		}
+		return (best < 0) ? null : agents[best];
+	}
+
+
+	double sumCommuteDist() {
+		double sum = 0;
+		for (int i = 0; i < size; i++) {
+			sum += commuteDist[i];
+		}
+		return sum;
+	}
+
+
+	long sumCommuteTime() {
+		long sum = 0;
+		for (int i = 0; i < size; i++) {
+			sum += commuteTime[i];
+		}
+		return sum;
+	}
+
+}
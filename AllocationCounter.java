@@ -0,0 +1,63 @@
+/**
+ *  Disaster ABM in MASON
+ *  Aug2020
+ */
+
+package disaster;
+
+// Class imports
+import java.lang.management.ManagementFactory;
+import sim.engine.SimState;
+import sim.engine.Steppable;
+
+
+/**
+ * Heap allocated by the schedule thread during each model step
+ *   Scheduled ahead of everything else in a step to note the bytes the thread has allocated so far;
+ *   Log reads the difference at the end of the step, so the garbage agents make moving can be
+ *   compared between runs. Uses the HotSpot per-thread allocation counter, and reports -1 on JVMs
+ *   without one.
+ */
+public class AllocationCounter implements Steppable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final com.sun.management.ThreadMXBean threads =
+			(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)
+			? (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean() : null;
+
+	private long stepStart = -1;	// bytes allocated by the thread when the step began
+	private long lastStep = -1;		// bytes allocated during the last step read
+
+
+	@Override
+	public void step(SimState state) {
+		stepStart = allocated();
+	}
+
+
+	/**
+	 * @return bytes allocated since the step began, also kept for getLastStep, or -1 if not measured
+	 */
+	long readStep() {
+		long now = allocated();
+		lastStep = ((now < 0) || (stepStart < 0)) ? -1 : now - stepStart;
+		return lastStep;
+	}
+
+
+	/** bytes allocated during the last step read, for the model inspector */
+	public long getLastStep() {
+		return lastStep;
+	}
+
+
+	private static long allocated() {
+		if ((threads == null) || !threads.isThreadAllocatedMemorySupported()
+				|| !threads.isThreadAllocatedMemoryEnabled()) {
+			return -1;
+		}
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+}
@@ -0,0 +1,41 @@
+/**
+ *  Disaster ABM in MASON
+ *  Aug2020
+ */
+
+package disaster;
+
+
+/**
+ * Behavior states of indvs and groups
+ *   An agent's state follows from its health, goal and commute status (see Indv.findBehavior and
+ *   Group.findBehavior), and its step dispatches on the state: routine states run the daily commute,
+ *   the others the nonroutine response to the event.
+ *   Only active states have work to do every step. BehaviorScheduler keeps the agents of each state
+ *   in their own registry and steps just the active ones, plus parked commuters at their commute
+ *   times and groups whose members changed, so parked, sheltering and dead agents cost nothing.
+ */
+public enum Behavior {
+
+	STAYING_HOME	(true, false),	// never commutes: stay-at-home or homeless
+	PARKED			(true, false),	// at home or work until its next commute time
+	COMMUTING		(true, true),	// travels its commute path, rerouting and detouring around damage
+	IN_GROUP		(true, false),	// indv carried by its carpool group
+	REACTING		(false, true),	// affected by the event, deciding whether to shelter or join a group
+	FLEEING			(false, true),	// affected, on foot away from ground zero
+	FINDING_SHELTER	(false, true),	// affected, routing to a shelter around the damage
+	SHELTERING		(false, false),	// affected, settled in a shelter
+	STRANDED		(false, false),	// affected carpool group, which has no nonroutine behavior yet
+	AIDING			(false, true),	// first responder moving to and aiding victims
+	DEAD			(false, false);	// dead indv, or a defunct or empty group
+
+	final boolean routine;	// runs the daily routine rather than the nonroutine response
+	final boolean active;	// has work every step
+
+
+	Behavior(boolean routine, boolean active) {
+		this.routine = routine;
+		this.active = active;
+	}
+
+}
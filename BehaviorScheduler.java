@@ -0,0 +1,173 @@
+/**
+ *  Disaster ABM in MASON
+ *  Aug2020
+ */
+
+package disaster;
+
+// Class imports
+import java.util.ArrayList;
+import sim.engine.SimState;
+import sim.engine.Steppable;
+import sim.util.Bag;
+
+
+/**
+ * Steps the indvs and groups whose behavior state has work this step
+ *   Scheduled once in place of every agent (see Parameters.behaviorScheduling), at ordering 1 so the
+ *   agents step after the NWMD effects at 0 and before the congestion refresh at 2. Each Behavior has a
+ *   registry of the agents in it; an agent's setters re-file it when its state changes, and it is
+ *   re-filed again after each step. A step runs, in a shuffled order as the MASON schedule would:
+ *     - every agent in an active state,
+ *     - agents parked in a routine state whose commute starts or ends now,
+ *     - groups woken because a member's health or goal changed, see wakeGroupsOf.
+ *   Agents parked between commutes, sheltering or dead are not visited.
+ */
+public class BehaviorScheduler implements Steppable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final World world;
+	private final ArrayList<ArrayList<Agent>> registries = new ArrayList<ArrayList<Agent>>();
+	private final ArrayList<ArrayList<Agent>> commuteTimes = new ArrayList<ArrayList<Agent>>();	// agents by time24 of a commute start or end
+	private final ArrayList<Agent> woken = new ArrayList<Agent>();
+	private final Bag batch = new Bag();
+	private int stepped = 0;			// agents stepped by the last step
+
+
+	public BehaviorScheduler(World world) {
+		this.world = world;
+		for (int i = 0; i < Behavior.values().length; i++) {
+			registries.add(new ArrayList<Agent>());
+		}
+		for (int t = 0; t < 2400; t++) {
+			commuteTimes.add(new ArrayList<Agent>());
+		}
+	}
+
+
+	/**
+	 * Schedules an indv, woken at its commute times while parked
+	 * @param a
+	 */
+	void add(Indv a) {
+		commuteTimes.get(a.get_tcommuteStart()).add(a);
+		commuteTimes.get(a.get_tcommuteEnd()).add(a);
+		file(a);
+	}
+
+
+	/**
+	 * Schedules a group, woken at its commute times while parked
+	 * @param g
+	 */
+	void add(Group g) {
+		commuteTimes.get(g.get_tcommuteStart()).add(g);
+		commuteTimes.get(g.get_tcommuteEnd()).add(g);
+		file(g);
+	}
+
+
+	private void file(Agent a) {
+		a.behaviors = this;
+		a.behavior = a.findBehavior();
+		ArrayList<Agent> registry = registries.get(a.behavior.ordinal());
+		a.behaviorSlot = registry.size();
+		registry.add(a);
+	}
+
+
+	/**
+	 * Moves the agent to the registry of its current state
+	 * @param a
+	 */
+	void update(Agent a) {
+		Behavior b = a.findBehavior();
+		if (b == a.behavior) {
+			return;
+		}
+		ArrayList<Agent> from = registries.get(a.behavior.ordinal());
+		Agent last = from.remove(from.size() - 1);
+		if (last != a) {
+			from.set(a.behaviorSlot, last);
+			last.behaviorSlot = a.behaviorSlot;
+		}
+		ArrayList<Agent> to = registries.get(b.ordinal());
+		a.behaviorSlot = to.size();
+		to.add(a);
+		a.behavior = b;
+	}
+
+
+	/**
+	 * Wakes the groups of an indv whose health or goal changed, since a group's health and goal
+	 * follow its members' and are only updated when it steps
+	 * @param a
+	 */
+	void wakeGroupsOf(Indv a) {
+		if (a.getinGroup() || a.getisLeader()) {
+			wake(world.idsToGrps.get(a.getindvGrpID()));
+			wake(world.idsToGrps.get(a.getcarGrpID()));
+		}
+	}
+
+
+	private void wake(Agent a) {
+		if ((a != null) && (a.behaviors == this) && !a.behavior.active) {
+			woken.add(a);
+		}
+	}
+
+
+	@Override
+	public void step(SimState state) {
+		long steps = state.schedule.getSteps();
+
+		batch.clear();
+		for (Behavior b : Behavior.values()) {
+			if (b.active) {
+				for (Agent a : registries.get(b.ordinal())) {
+					a.queuedStep = steps;
+					batch.add(a);
+				}
+			}
+		}
+		queueParked(commuteTimes.get(Spacetime.time24(steps)), steps);
+		queueParked(woken, steps);
+		woken.clear();
+
+		batch.shuffle(state.random);
+		stepped = batch.numObjs;
+		for (int i = 0; i < batch.numObjs; i++) {
+			Agent a = (Agent) batch.objs[i];
+			a.step(state);
+			update(a);
+		}
+	}
+
+
+	private void queueParked(ArrayList<Agent> agents, long steps) {
+		for (Agent a : agents) {
+			if (!a.behavior.active && (a.queuedStep != steps)) {
+				a.queuedStep = steps;
+				batch.add(a);
+			}
+		}
+	}
+
+
+	/**
+	 * @param b
+	 * @return agents in the state
+	 */
+	public int count(Behavior b) {
+		return registries.get(b.ordinal()).size();
+	}
+
+
+	/** agents stepped by the last step, for monitoring */
+	public int getStepped() {
+		return stepped;
+	}
+
+}
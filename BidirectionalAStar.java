@@ -0,0 +1,207 @@
+/**
+ *  Disaster ABM in MASON
+ *  Aug2020
+ */
+
+package disaster;
+
+// Class imports
+import com.vividsolutions.jts.planargraph.Node;
+import java.util.ArrayList;
+import java.util.Collections;
+import sim.util.geo.GeomPlanarGraphDirectedEdge;
+
+
+/**
+ * Bidirectional A* over the routing snapshot
+ *   One search runs forward from the start over out-edges, the other backward from the goal over
+ *   in-edges. Both use the average potential p(v) = (h(v,goal) - h(start,v)) / 2, forward keys
+ *   d(v) + p(v) and backward keys d(v) - p(v), so both searches see the same consistent reduced
+ *   costs. The best meeting distance mu is then final once the two smallest keys add up to mu.
+ *   Long commutes settle two small frontiers instead of one large one.
+ *   Costs and heuristic match AStar, so paths have the same length, though ties may be broken differently.
+ */
+public class BidirectionalAStar implements Router {
+
+	final RoadGraph graph;
+	final Landmarks landmarks;		// optional ALT landmark table, null for the straight line heuristic alone
+	final TrafficCosts traffic;		// optional travel time costs, null to route on straight line length
+	int settled = 0;				// nodes settled by the last search, both directions
+
+	private final double[] distF;
+	private final double[] distB;
+	private final int[] parentF;	// slot by which the node was reached, -1 at the start / goal
+	private final int[] parentB;
+	private final int[] stampF;		// node reached by the current forward search when equal to search
+	private final int[] stampB;
+	private final boolean[] closedF;
+	private final boolean[] closedB;
+	private final NodeHeap heapF;
+	private final NodeHeap heapB;
+	private int search = 0;
+	private int s, t;				// start and goal of the current search
+
+
+	/**
+	 * @param graph road network snapshot to search
+	 * @param landmarks ALT landmark table for graph, or null
+	 * @param traffic travel time costs for graph, or null
+	 */
+	public BidirectionalAStar(RoadGraph graph, Landmarks landmarks, TrafficCosts traffic) {
+		this.graph = graph;
+		this.landmarks = landmarks;
+		this.traffic = traffic;
+		int n = graph.numNodes;
+		distF = new double[n];
+		distB = new double[n];
+		parentF = new int[n];
+		parentB = new int[n];
+		stampF = new int[n];
+		stampB = new int[n];
+		closedF = new boolean[n];
+		closedB = new boolean[n];
+		heapF = new NodeHeap(n);
+		heapB = new NodeHeap(n);
+	}
+
+
+	@Override
+	public ArrayList<GeomPlanarGraphDirectedEdge> findPath(Node start, Node goal) {
+		ArrayList<GeomPlanarGraphDirectedEdge> path = new ArrayList<GeomPlanarGraphDirectedEdge>();
+		s = graph.nodeId(start);
+		t = graph.nodeId(goal);
+		settled = 0;
+		if (s < 0 || t < 0 || s == t) {
+			return path;
+		}
+
+		search++;
+		heapF.clear();
+		heapB.clear();
+		reachForward(s, 0, -1);
+		reachBackward(t, 0, -1);
+
+		double best = Double.POSITIVE_INFINITY;
+		int meet = -1;
+
+		while (!heapF.isEmpty() && !heapB.isEmpty()) {
+			double minF = heapF.minKey();
+			double minB = heapB.minKey();
+			if (minF + minB >= best) {
+				break; // no path through an unsettled node can be shorter than the best meeting point
+			}
+			settled++;
+			if (minF <= minB) {
+				int u = heapF.pop();
+				closedF[u] = true;
+				for (int e = graph.outStart[u]; e < graph.outStart[u + 1]; e++) {
+					int x = graph.edgeTo[e];
+					double d = distF[u] + cost(e);
+					if (d == Double.POSITIVE_INFINITY) {
+						continue; // edge can't be traveled
+					}
+					if (stampF[x] != search || (!closedF[x] && d < distF[x])) {
+						reachForward(x, d, e);
+					}
+					if (stampB[x] == search && distF[x] + distB[x] < best) {
+						best = distF[x] + distB[x];
+						meet = x;
+					}
+				}
+			}
+			else {
+				int u = heapB.pop();
+				closedB[u] = true;
+				for (int i = graph.inStart[u]; i < graph.inStart[u + 1]; i++) {
+					int e = graph.inEdges[i];
+					int x = graph.edgeFrom[e];
+					double d = distB[u] + cost(e);
+					if (d == Double.POSITIVE_INFINITY) {
+						continue; // edge can't be traveled
+					}
+					if (stampB[x] != search || (!closedB[x] && d < distB[x])) {
+						reachBackward(x, d, e);
+					}
+					if (stampF[x] == search && distF[x] + distB[x] < best) {
+						best = distF[x] + distB[x];
+						meet = x;
+					}
+				}
+			}
+		}
+
+		if (meet < 0) {
+			return path; // no path
+		}
+
+		// edges from the start to the meeting node, then on to the goal
+		for (int v = meet; parentF[v] >= 0; v = graph.edgeFrom[parentF[v]]) {
+			path.add(graph.dirEdges[parentF[v]]);
+		}
+		Collections.reverse(path);
+		for (int v = meet; parentB[v] >= 0; v = graph.edgeTo[parentB[v]]) {
+			path.add(graph.dirEdges[parentB[v]]);
+		}
+		return path;
+	}
+
+
+	private void reachForward(int x, double d, int slot) {
+		if (stampF[x] != search) {
+			stampF[x] = search;
+			closedF[x] = false;
+		}
+		distF[x] = d;
+		parentF[x] = slot;
+		heapF.insertOrDecrease(x, d + potential(x));
+	}
+
+	private void reachBackward(int x, double d, int slot) {
+		if (stampB[x] != search) {
+			stampB[x] = search;
+			closedB[x] = false;
+		}
+		distB[x] = d;
+		parentB[x] = slot;
+		heapB.insertOrDecrease(x, d - potential(x));
+	}
+
+
+	/**
+	 * Forward potential of a node for the current search; the backward potential is its negative
+	 * @param v node id
+	 * @return
+	 */
+	private double potential(int v) {
+		return (heuristic(v, t) - heuristic(s, v)) / 2;
+	}
+
+
+	/**
+	 * Same estimate as AStar.heuristic: straight line distance, raised to the landmark
+	 * lower bound and turned into time under congestion routing
+	 * @param x node id
+	 * @param y node id
+	 * @return
+	 */
+	private double heuristic(int x, int y) {
+		double h = graph.distance(x, y);
+		if (landmarks != null) {
+			h = Math.max(h, landmarks.lowerBound(x, y));
+		}
+		if (traffic != null) {
+			h *= traffic.scale;
+		}
+		return h;
+	}
+
+
+	/**
+	 * @param e slot
+	 * @return cost of the edge, as in AStar.cost
+	 */
+	private double cost(int e) {
+		return (traffic == null) ? graph.edgeLength[e] : traffic.cost[e];
+	}
+
+}
@@ -0,0 +1,87 @@
+/**
+ *  Disaster ABM in MASON
+ *  Aug2020
+ */
+
+package disaster;
+
+// Class imports
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import sim.util.geo.GeomPlanarGraphDirectedEdge;
+import sim.util.geo.GeomPlanarGraphEdge;
+
+
+/**
+ * Immutable path of directed road edges stored as edge ids and a direction bit per edge
+ *   Edge ids are the stable ids of EdgeAttributes, so a path stays valid across routing snapshots.
+ *   A bit set means the path runs along the edge's second directed edge.
+ *   Paths are shared: the PathCache hands the same instance to every agent with the same start and
+ *   goal, and riders, groups and the commute/current paths of an agent all refer to one copy.
+ *   Agents already walk paths through a cursor (indexOnPath, pathDirection), so flipping a path
+ *   for the trip home never copies it.
+ *   Reads as a List, so path handling code is unchanged; changing it throws UnsupportedOperationException.
+ */
+public class CompactPath extends AbstractList<GeomPlanarGraphDirectedEdge> implements RandomAccess {
+
+	static final CompactPath EMPTY = new CompactPath(null, new int[0], new long[0]);
+
+	private final EdgeAttributes attributes;
+	private final int[] edges;			// edge ids in travel order
+	private final long[] second;		// direction bits
+
+
+	private CompactPath(EdgeAttributes attributes, int[] edges, long[] second) {
+		this.attributes = attributes;
+		this.edges = edges;
+		this.second = second;
+	}
+
+
+	/**
+	 * @param path
+	 * @param attributes edge ids of the road network
+	 * @return the path in compact form, path itself if it already is, or null for a null path
+	 */
+	static CompactPath of(List<GeomPlanarGraphDirectedEdge> path, EdgeAttributes attributes) {
+		if (path == null) {
+			return null;
+		}
+		if (path instanceof CompactPath) {
+			return (CompactPath) path;
+		}
+		int n = path.size();
+		if (n == 0) {
+			return EMPTY;
+		}
+		int[] edges = new int[n];
+		long[] second = new long[(n + 63) >>> 6];
+		for (int i = 0; i < n; i++) {
+			GeomPlanarGraphDirectedEdge de = path.get(i);
+			GeomPlanarGraphEdge edge = (GeomPlanarGraphEdge) de.getEdge();
+			edges[i] = EdgeAttributes.id(edge);
+			if (de != edge.getDirEdge(0)) {
+				second[i >>> 6] |= 1L << i;
+			}
+		}
+		return new CompactPath(attributes, edges, second);
+	}
+
+
+	@Override
+	public GeomPlanarGraphDirectedEdge get(int i) {
+		if (i < 0 || i >= edges.length) {
+			throw new IndexOutOfBoundsException("index " + i + ", size " + edges.length);
+		}
+		int direction = ((second[i >>> 6] & (1L << i)) != 0) ? 1 : 0;
+		return (GeomPlanarGraphDirectedEdge) attributes.edge(edges[i]).getDirEdge(direction);
+	}
+
+
+	@Override
+	public int size() {
+		return edges.length;
+	}
+
+}
@@ -0,0 +1,622 @@
+/**
+ *  Disaster ABM in MASON
+ *  Aug2020
+ */
+
+package disaster;
+
+// Class imports
+import com.vividsolutions.jts.planargraph.Node;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import sim.util.geo.GeomPlanarGraphDirectedEdge;
+
+
+/**
+ * Contraction hierarchy over the routing snapshot
+ *   Nodes are contracted one at a time in order of importance (edge difference, contracted
+ *   neighbors and depth); shortcuts keep the shortest distances between the remaining nodes.
+ *   Queries are a bidirectional Dijkstra (with stall-on-demand) that only climbs to higher ranked nodes, and the
+ *   shortcuts on the found path are unpacked back into road network directed edges.
+ *   Edge weights are road length in kilometers or travel time in minutes at the speed limit;
+ *   impassable edges (speed 0) are left out of the time weighted hierarchy.
+ *   The hierarchy is built for one snapshot (see World.updateRoadGraph). Its shortcuts may run over edges
+ *   that detonation damage removes, so it is dropped then and paths are found with A* (see World.removeRoadNodes).
+ */
+public class ContractionHierarchy {
+
+	// limit on nodes settled by a witness search, keeps preprocessing fast at the cost of a few extra shortcuts
+	private static final int WITNESS_SETTLE_LIMIT = 500;
+
+	final RoadGraph graph;
+	final boolean travelTime;
+
+	// arcs: road network edges and shortcuts
+	private int numArcs = 0;
+	private int[] arcFrom;
+	private int[] arcTo;
+	private double[] arcWeight;
+	private int[] arcLow;		// original edge: snapshot slot; shortcut: first arc it replaces
+	private int[] arcHigh;		// original edge: -1; shortcut: second arc it replaces
+	int shortcuts = 0;
+
+	final int[] rank;			// node id -> contraction order
+
+	// query graphs: upward arcs out of a node, and arcs into a node from higher ranked nodes
+	private int[] upStart;
+	private int[] upArcs;
+	private int[] downStart;
+	private int[] downArcs;
+
+	// preprocessing state, released once the hierarchy is built
+	private int[][] outAdj;
+	private int[][] inAdj;
+	private int[] outCount;
+	private int[] inCount;
+	private boolean[] contracted;
+	private int[] contractedNeighbors;
+	private int[] depth;			// levels of contracted nodes below a node, spreads contraction evenly
+	private double[] witnessDist;
+	private int[] witnessStamp;
+	private int witnessSearch = 0;
+	private NodeHeap witnessHeap;
+
+
+	/**
+	 * Builds the hierarchy
+	 * @param graph routing snapshot
+	 * @param travelTime weight edges by minutes at the speed limit instead of kilometers
+	 */
+	public ContractionHierarchy(RoadGraph graph, boolean travelTime) {
+		this.graph = graph;
+		this.travelTime = travelTime;
+		long startTime = System.nanoTime();
+
+		int n = graph.numNodes;
+		rank = new int[n];
+		outAdj = new int[n][];
+		inAdj = new int[n][];
+		outCount = new int[n];
+		inCount = new int[n];
+		contracted = new boolean[n];
+		contractedNeighbors = new int[n];
+		depth = new int[n];
+		witnessDist = new double[n];
+		witnessStamp = new int[n];
+		witnessHeap = new NodeHeap(n);
+
+		int capacity = Math.max(16, graph.numEdges * 2);
+		arcFrom = new int[capacity];
+		arcTo = new int[capacity];
+		arcWeight = new double[capacity];
+		arcLow = new int[capacity];
+		arcHigh = new int[capacity];
+		for (int v = 0; v < n; v++) {
+			int degree = graph.outStart[v + 1] - graph.outStart[v];
+			outAdj[v] = new int[Math.max(2, degree)];
+			inAdj[v] = new int[Math.max(2, graph.inStart[v + 1] - graph.inStart[v])];
+		}
+
+		// road edges, keeping only the cheapest of parallel edges
+		for (int e = 0; e < graph.numEdges; e++) {
+			double w = weight(e);
+			int u = graph.edgeFrom[e];
+			int x = graph.edgeTo[e];
+			if (Double.isInfinite(w) || u == x) {
+				continue;
+			}
+			int existing = findArc(u, x);
+			if (existing < 0) {
+				addArc(u, x, w, e, -1);
+			}
+			else if (w < arcWeight[existing]) {
+				arcWeight[existing] = w;
+				arcLow[existing] = e;
+			}
+		}
+
+		// contract in order of priority; a node's neighbors are re-prioritized after it is
+		// contracted, and a popped node is re-checked lazily before it is contracted itself
+		PriorityQueue<Long> queue = new PriorityQueue<Long>();
+		int[] queued = new int[n];	// priority of a node's live queue entry, older entries are skipped
+		for (int v = 0; v < n; v++) {
+			queued[v] = priority(v);
+			queue.add(entry(queued[v], v));
+		}
+		int level = 0;
+		while (!queue.isEmpty()) {
+			long top = queue.poll();
+			int v = (int) (top & 0xffffffffL);
+			if (contracted[v] || entryPriority(top) != queued[v]) {
+				continue;
+			}
+			int p = priority(v);
+			if (!queue.isEmpty() && p > entryPriority(queue.peek())) {
+				queued[v] = p;
+				queue.add(entry(p, v));
+				continue;
+			}
+			contract(v, false);
+			rank[v] = level++;
+			depth[v]++;
+			for (int i = 0; i < outCount[v]; i++) {
+				int x = arcTo[outAdj[v][i]];
+				if (!contracted[x]) {
+					depth[x] = Math.max(depth[x], depth[v]);
+					queued[x] = priority(x);
+					queue.add(entry(queued[x], x));
+				}
+			}
+			for (int i = 0; i < inCount[v]; i++) {
+				int u = arcFrom[inAdj[v][i]];
+				if (!contracted[u]) {
+					depth[u] = Math.max(depth[u], depth[v]);
+					queued[u] = priority(u);
+					queue.add(entry(queued[u], u));
+				}
+			}
+		}
+
+		buildQueryGraphs();
+
+		// preprocessing state is no longer needed
+		outAdj = null;
+		inAdj = null;
+		outCount = null;
+		inCount = null;
+		contracted = null;
+		contractedNeighbors = null;
+		depth = null;
+		witnessDist = null;
+		witnessStamp = null;
+		witnessHeap = null;
+
+		System.out.println("ContractionHierarchy>built for " + n + " nodes with " + shortcuts + " shortcuts"
+				+ (travelTime ? " (travel time)" : " (distance)") + " in (ms): " + (System.nanoTime() - startTime) / 1000000);
+	}
+
+
+	/**
+	 * @param slot snapshot edge slot
+	 * @return weight of the edge, infinity if it can not be traveled
+	 */
+	private double weight(int slot) {
+		if (!travelTime) {
+			return graph.edgeKm[slot];
+		}
+		if (graph.edgeSpeed[slot] <= 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return graph.edgeKm[slot] / graph.edgeSpeed[slot] * 60.0;
+	}
+
+
+	/**
+	 * Queue entry ordered by priority, then node id
+	 */
+	private static long entry(int priority, int v) {
+		return ((long) (priority + Integer.MAX_VALUE / 2) << 32) | v;
+	}
+
+	private static int entryPriority(long entry) {
+		return (int) (entry >> 32) - Integer.MAX_VALUE / 2;
+	}
+
+
+	/**
+	 * Weighted edge difference (shortcuts added minus arcs removed) plus the number of
+	 * contracted neighbors and the node's hierarchy depth
+	 * @param v
+	 * @return
+	 */
+	private int priority(int v) {
+		int removed = 0;
+		for (int i = 0; i < inCount[v]; i++) {
+			if (!contracted[arcFrom[inAdj[v][i]]]) {
+				removed++;
+			}
+		}
+		for (int i = 0; i < outCount[v]; i++) {
+			if (!contracted[arcTo[outAdj[v][i]]]) {
+				removed++;
+			}
+		}
+		return (contract(v, true) - removed) + contractedNeighbors[v] + depth[v];
+	}
+
+
+	/**
+	 * Contracts a node, adding a shortcut u->x for each pair of neighbors whose shortest
+	 * connection runs through v
+	 * @param v
+	 * @param simulate only count the shortcuts
+	 * @return number of shortcuts needed
+	 */
+	private int contract(int v, boolean simulate) {
+		int count = 0;
+
+		for (int i = 0; i < inCount[v]; i++) {
+			int in = inAdj[v][i];
+			int u = arcFrom[in];
+			if (contracted[u]) {
+				continue;
+			}
+
+			double maxOut = -1;
+			for (int j = 0; j < outCount[v]; j++) {
+				int out = outAdj[v][j];
+				int x = arcTo[out];
+				if (!contracted[x] && x != u) {
+					maxOut = Math.max(maxOut, arcWeight[out]);
+				}
+			}
+			if (maxOut < 0) {
+				continue;
+			}
+
+			witnessSearch(u, v, arcWeight[in] + maxOut);
+
+			for (int j = 0; j < outCount[v]; j++) {
+				int out = outAdj[v][j];
+				int x = arcTo[out];
+				if (contracted[x] || x == u) {
+					continue;
+				}
+				double via = arcWeight[in] + arcWeight[out];
+				if (witnessStamp[x] == witnessSearch && witnessDist[x] <= via) {
+					continue; // there is a path at least as short that avoids v
+				}
+				count++;
+				if (!simulate) {
+					addShortcut(u, x, via, in, out);
+				}
+			}
+		}
+
+		if (!simulate) {
+			contracted[v] = true;
+			for (int i = 0; i < inCount[v]; i++) {
+				contractedNeighbors[arcFrom[inAdj[v][i]]]++;
+			}
+			for (int i = 0; i < outCount[v]; i++) {
+				contractedNeighbors[arcTo[outAdj[v][i]]]++;
+			}
+		}
+		return count;
+	}
+
+
+	/**
+	 * Limited Dijkstra from u over the uncontracted nodes, not passing through v
+	 * @param u
+	 * @param v
+	 * @param maxDist
+	 */
+	private void witnessSearch(int u, int v, double maxDist) {
+		witnessSearch++;
+		witnessHeap.clear();
+		witnessStamp[u] = witnessSearch;
+		witnessDist[u] = 0;
+		witnessHeap.insertOrDecrease(u, 0);
+		int settled = 0;
+
+		while (!witnessHeap.isEmpty() && settled < WITNESS_SETTLE_LIMIT) {
+			if (witnessHeap.minKey() > maxDist) {
+				break;
+			}
+			int y = witnessHeap.pop();
+			settled++;
+			for (int i = 0; i < outCount[y]; i++) {
+				int a = outAdj[y][i];
+				int z = arcTo[a];
+				if (z == v || contracted[z]) {
+					continue;
+				}
+				double d = witnessDist[y] + arcWeight[a];
+				if (witnessStamp[z] != witnessSearch || d < witnessDist[z]) {
+					witnessStamp[z] = witnessSearch;
+					witnessDist[z] = d;
+					witnessHeap.insertOrDecrease(z, d);
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * @return the arc u->x still in the contraction graph, or -1
+	 */
+	private int findArc(int u, int x) {
+		for (int i = 0; i < outCount[u]; i++) {
+			if (arcTo[outAdj[u][i]] == x) {
+				return outAdj[u][i];
+			}
+		}
+		return -1;
+	}
+
+
+	private void addShortcut(int u, int x, double w, int low, int high) {
+		int existing = findArc(u, x);
+		if (existing >= 0 && arcWeight[existing] <= w) {
+			return;
+		}
+		shortcuts++;
+		if (existing < 0) {
+			addArc(u, x, w, low, high);
+			return;
+		}
+		// the old arc may be part of earlier shortcuts, so it is replaced rather than changed
+		int a = newArc(u, x, w, low, high);
+		replace(outAdj[u], outCount[u], existing, a);
+		replace(inAdj[x], inCount[x], existing, a);
+	}
+
+
+	private void addArc(int u, int x, double w, int low, int high) {
+		int a = newArc(u, x, w, low, high);
+		if (outCount[u] == outAdj[u].length) {
+			outAdj[u] = Arrays.copyOf(outAdj[u], outCount[u] * 2);
+		}
+		outAdj[u][outCount[u]++] = a;
+		if (inCount[x] == inAdj[x].length) {
+			inAdj[x] = Arrays.copyOf(inAdj[x], inCount[x] * 2);
+		}
+		inAdj[x][inCount[x]++] = a;
+	}
+
+
+	private int newArc(int u, int x, double w, int low, int high) {
+		if (numArcs == arcFrom.length) {
+			int capacity = numArcs * 2;
+			arcFrom = Arrays.copyOf(arcFrom, capacity);
+			arcTo = Arrays.copyOf(arcTo, capacity);
+			arcWeight = Arrays.copyOf(arcWeight, capacity);
+			arcLow = Arrays.copyOf(arcLow, capacity);
+			arcHigh = Arrays.copyOf(arcHigh, capacity);
+		}
+		arcFrom[numArcs] = u;
+		arcTo[numArcs] = x;
+		arcWeight[numArcs] = w;
+		arcLow[numArcs] = low;
+		arcHigh[numArcs] = high;
+		return numArcs++;
+	}
+
+
+	private static void replace(int[] list, int count, int oldArc, int newArc) {
+		for (int i = 0; i < count; i++) {
+			if (list[i] == oldArc) {
+				list[i] = newArc;
+				return;
+			}
+		}
+	}
+
+
+	/**
+	 * Splits the final arcs into the upward graph for forward searches and the
+	 * downward graph (stored at the lower node) for backward searches
+	 */
+	private void buildQueryGraphs() {
+		int n = graph.numNodes;
+		upStart = new int[n + 1];
+		downStart = new int[n + 1];
+		for (int u = 0; u < n; u++) {
+			for (int i = 0; i < outCount[u]; i++) {
+				int x = arcTo[outAdj[u][i]];
+				if (rank[x] > rank[u]) {
+					upStart[u + 1]++;
+				}
+				else {
+					downStart[x + 1]++;
+				}
+			}
+		}
+		for (int v = 0; v < n; v++) {
+			upStart[v + 1] += upStart[v];
+			downStart[v + 1] += downStart[v];
+		}
+		upArcs = new int[upStart[n]];
+		downArcs = new int[downStart[n]];
+		int[] upFill = new int[n];
+		int[] downFill = new int[n];
+		for (int u = 0; u < n; u++) {
+			for (int i = 0; i < outCount[u]; i++) {
+				int a = outAdj[u][i];
+				int x = arcTo[a];
+				if (rank[x] > rank[u]) {
+					upArcs[upStart[u] + upFill[u]++] = a;
+				}
+				else {
+					downArcs[downStart[x] + downFill[x]++] = a;
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Appends the road network edges an arc stands for, in travel order
+	 * @param arc
+	 * @param path
+	 */
+	private void unpack(int arc, ArrayList<GeomPlanarGraphDirectedEdge> path) {
+		int[] stack = new int[16];
+		int top = 0;
+		stack[top++] = arc;
+		while (top > 0) {
+			int a = stack[--top];
+			if (arcHigh[a] < 0) {
+				path.add(graph.dirEdges[arcLow[a]]);
+			}
+			else {
+				if (top + 2 > stack.length) {
+					stack = Arrays.copyOf(stack, stack.length * 2);
+				}
+				stack[top++] = arcHigh[a];
+				stack[top++] = arcLow[a];
+			}
+		}
+	}
+
+
+	/**
+	 * @return a new query object with its own search state
+	 */
+	public Query newQuery() {
+		return new Query();
+	}
+
+
+	/**
+	 * Bidirectional upward search; one per thread
+	 */
+	public class Query implements Router {
+
+		private final double[] distF;
+		private final double[] distB;
+		private final int[] parentF;	// arc by which the node was reached
+		private final int[] parentB;
+		private final int[] stampF;
+		private final int[] stampB;
+		private final NodeHeap heapF;
+		private final NodeHeap heapB;
+		private int search = 0;
+		int settled = 0;				// nodes settled by the last query
+
+		Query() {
+			int n = graph.numNodes;
+			distF = new double[n];
+			distB = new double[n];
+			parentF = new int[n];
+			parentB = new int[n];
+			stampF = new int[n];
+			stampB = new int[n];
+			heapF = new NodeHeap(n);
+			heapB = new NodeHeap(n);
+		}
+
+		@Override
+		public ArrayList<GeomPlanarGraphDirectedEdge> findPath(Node start, Node goal) {
+			ArrayList<GeomPlanarGraphDirectedEdge> path = new ArrayList<GeomPlanarGraphDirectedEdge>();
+			int s = graph.nodeId(start);
+			int t = graph.nodeId(goal);
+			settled = 0;
+			if (s < 0 || t < 0 || s == t) {
+				return path;
+			}
+
+			search++;
+			heapF.clear();
+			heapB.clear();
+			stampF[s] = search;
+			distF[s] = 0;
+			parentF[s] = -1;
+			heapF.insertOrDecrease(s, 0);
+			stampB[t] = search;
+			distB[t] = 0;
+			parentB[t] = -1;
+			heapB.insertOrDecrease(t, 0);
+
+			double best = Double.POSITIVE_INFINITY;
+			int meet = -1;
+
+			while (!heapF.isEmpty() || !heapB.isEmpty()) {
+				double minF = heapF.minKey();
+				double minB = heapB.minKey();
+				if (Math.min(minF, minB) >= best) {
+					break; // neither side can still improve on the best meeting point
+				}
+				settled++;
+				if (minF <= minB) {
+					int u = heapF.pop();
+					if (stampB[u] == search && distF[u] + distB[u] < best) {
+						best = distF[u] + distB[u];
+						meet = u;
+					}
+					if (stalledForward(u)) {
+						continue;
+					}
+					for (int i = upStart[u]; i < upStart[u + 1]; i++) {
+						int a = upArcs[i];
+						int x = arcTo[a];
+						double d = distF[u] + arcWeight[a];
+						if (stampF[x] != search || d < distF[x]) {
+							stampF[x] = search;
+							distF[x] = d;
+							parentF[x] = a;
+							heapF.insertOrDecrease(x, d);
+						}
+					}
+				}
+				else {
+					int u = heapB.pop();
+					if (stampF[u] == search && distF[u] + distB[u] < best) {
+						best = distF[u] + distB[u];
+						meet = u;
+					}
+					if (stalledBackward(u)) {
+						continue;
+					}
+					for (int i = downStart[u]; i < downStart[u + 1]; i++) {
+						int a = downArcs[i];
+						int x = arcFrom[a];
+						double d = distB[u] + arcWeight[a];
+						if (stampB[x] != search || d < distB[x]) {
+							stampB[x] = search;
+							distB[x] = d;
+							parentB[x] = a;
+							heapB.insertOrDecrease(x, d);
+						}
+					}
+				}
+			}
+
+			if (meet < 0) {
+				return path; // no path
+			}
+
+			// arcs from the start up to the meeting node, then down to the goal
+			ArrayList<Integer> upward = new ArrayList<Integer>();
+			for (int v = meet; parentF[v] >= 0; v = arcFrom[parentF[v]]) {
+				upward.add(parentF[v]);
+			}
+			for (int i = upward.size() - 1; i >= 0; i--) {
+				unpack(upward.get(i), path);
+			}
+			for (int v = meet; parentB[v] >= 0; v = arcTo[parentB[v]]) {
+				unpack(parentB[v], path);
+			}
+			return path;
+		}
+
+		/**
+		 * Stall-on-demand: a node reached more cheaply through a higher ranked node the
+		 * forward search has already seen can not be on a shortest up-down path
+		 */
+		private boolean stalledForward(int u) {
+			for (int i = downStart[u]; i < downStart[u + 1]; i++) {
+				int a = downArcs[i];
+				int x = arcFrom[a];
+				if (stampF[x] == search && distF[x] + arcWeight[a] < distF[u]) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private boolean stalledBackward(int u) {
+			for (int i = upStart[u]; i < upStart[u + 1]; i++) {
+				int a = upArcs[i];
+				int x = arcTo[a];
+				if (stampB[x] == search && distB[x] + arcWeight[a] < distB[u]) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,119 @@
+/**
+ *  Disaster ABM in MASON
+ *  Aug2020
+ */
+
+package disaster;
+
+// Class imports
+import java.util.ArrayList;
+import java.util.HashMap;
+import sim.util.geo.GeomPlanarGraphEdge;
+
+
+/**
+ * Road edge attributes in primitive arrays indexed by edge id
+ *   WorldBuilder numbers each GeomPlanarGraphEdge as it loads the road network and stores the id as
+ *   the edge's data, so agents read an edge's length and speed limit with id() and two array reads
+ *   instead of two HashMap lookups and unboxings every step.
+ *   The MTFCC road class is kept as an index into the distinct codes read, and each edge's
+ *   polyline is kept as an EdgeGeometry for agents moving along it.
+ *   Detonation damage is applied to arrays of edge ids at once, see damage().
+ */
+public class EdgeAttributes {
+
+	// damage states
+	static final byte INTACT = 0;
+	static final byte DAMAGED = 1;		// slowed, still passable
+	static final byte DESTROYED = 2;	// speed limit 0, impassable
+
+	private int size = 0;
+	private final GeomPlanarGraphEdge[] edges;	// edge of each id, kept after damage removes it from the network
+	private final EdgeGeometry[] geometry;	// polyline with distances along it, for agent movement
+	private final double[] km;			// road length in kilometers
+	private final double[] speedLimit;	// km/hour
+	private final byte[] roadClass;		// index into classes
+	private final byte[] damage;
+	private final ArrayList<String> classes = new ArrayList<String>();
+	private final HashMap<String, Byte> classIds = new HashMap<String, Byte>();
+
+
+	/**
+	 * @param capacity number of edges to be added
+	 */
+	public EdgeAttributes(int capacity) {
+		edges = new GeomPlanarGraphEdge[capacity];
+		geometry = new EdgeGeometry[capacity];
+		km = new double[capacity];
+		speedLimit = new double[capacity];
+		roadClass = new byte[capacity];
+		damage = new byte[capacity];
+	}
+
+
+	/**
+	 * Numbers the edge and records its attributes
+	 * @param e
+	 * @param kilometers
+	 * @param speed km/hour
+	 * @param mtfcc Census road class code
+	 * @return the edge's id
+	 */
+	int add(GeomPlanarGraphEdge e, double kilometers, double speed, String mtfcc) {
+		Byte c = classIds.get(mtfcc);
+		if (c == null) {
+			c = (byte) classes.size();
+			classIds.put(mtfcc, c);
+			classes.add(mtfcc);
+		}
+		int id = size++;
+		edges[id] = e;
+		geometry[id] = (e.getLine() == null) ? null : new EdgeGeometry(e.getLine());
+		km[id] = kilometers;
+		speedLimit[id] = speed;
+		roadClass[id] = c;
+		damage[id] = INTACT;
+		e.setData(id);
+		return id;
+	}
+
+
+	/**
+	 * @param e
+	 * @return the edge's id, numbered when the road network was loaded
+	 */
+	static int id(GeomPlanarGraphEdge e) {
+		return (Integer) e.getData();
+	}
+
+	public int size()						{ return size; }
+	public GeomPlanarGraphEdge edge(int id)	{ return edges[id]; }
+	public EdgeGeometry geometry(GeomPlanarGraphEdge e)	{ return geometry[id(e)]; }
+	public double km(GeomPlanarGraphEdge e)	{ return km[id(e)]; }
+	public double speedLimit(GeomPlanarGraphEdge e)	{ return speedLimit[id(e)]; }
+	public String mtfcc(GeomPlanarGraphEdge e)	{ return classes.get(roadClass[id(e)]); }
+	public byte damage(GeomPlanarGraphEdge e)	{ return damage[id(e)]; }
+
+
+	/**
+	 * Sets the speed limit and damage state of the edges not yet destroyed
+	 * @param ids edge ids, an edge may appear more than once
+	 * @param count number of ids used
+	 * @param speed new speed limit, 0 destroys the edges
+	 * @param state damage state
+	 * @return number of updates made, counting repeated ids
+	 */
+	int damage(int[] ids, int count, double speed, byte state) {
+		int changed = 0;
+		for (int i = 0; i < count; i++) {
+			int id = ids[i];
+			if (speedLimit[id] != 0) {
+				speedLimit[id] = speed;
+				damage[id] = state;
+				changed++;
+			}
+		}
+		return changed;
+	}
+
+}
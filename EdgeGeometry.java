@@ -0,0 +1,137 @@
+/**
+ *  Disaster ABM in MASON
+ *  Aug2020
+ */
+
+package disaster;
+
+// Class imports
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.LineString;
+
+
+/**
+ * Polyline of a road edge with the distance along it, in kilometers, at each vertex
+ *   Built once per edge when the road network is loaded (see EdgeAttributes), replacing the
+ *   LengthIndexedLine agents built on every edge transition. Agents keep their position on an edge
+ *   in kilometers from the start of the line (Agent.currentIndex), so a point is found by
+ *   interpolating between the vertices on either side; the agent remembers that segment and moves
+ *   it forward or back as it travels, so finding the point is O(1) amortized.
+ */
+public class EdgeGeometry {
+
+	private final double[] x, y;		// vertices
+	private final double[] km;			// distance from the first vertex, same scale as Spacetime.degToKilometers
+	final double lengthKm;
+
+
+	/**
+	 * @param line
+	 */
+	public EdgeGeometry(LineString line) {
+		int n = line.getNumPoints();
+		x = new double[n];
+		y = new double[n];
+		km = new double[n];
+		double deg = 0;
+		for (int i = 0; i < n; i++) {
+			Coordinate c = line.getCoordinateN(i);
+			x[i] = c.x;
+			y[i] = c.y;
+			if (i > 0) {
+				double dx = x[i] - x[i - 1];
+				double dy = y[i] - y[i - 1];
+				deg += Math.sqrt(dx * dx + dy * dy);
+			}
+			km[i] = Spacetime.degToKilometers(deg);
+		}
+		lengthKm = km[n - 1];
+	}
+
+
+	/**
+	 * Segment holding a position, searched from the segment of the last position
+	 * @param index kilometers from the start of the line
+	 * @param hint segment of a nearby position
+	 * @return segment s, with km[s] <= index <= km[s+1] for positions on the line
+	 */
+	int segmentAt(double index, int hint) {
+		int last = x.length - 2;
+		if (last < 0) {
+			return 0;
+		}
+		int s = Math.max(0, Math.min(last, hint));
+		while (s < last && index > km[s + 1]) {
+			s++;
+		}
+		while (s > 0 && index < km[s]) {
+			s--;
+		}
+		return s;
+	}
+
+
+	/**
+	 * @param index kilometers from the start of the line, clamped to the line
+	 * @param s segment from segmentAt
+	 * @return the point at the position
+	 */
+	Coordinate pointAt(double index, int s) {
+		Coordinate c = new Coordinate();
+		pointAt(index, s, c);
+		return c;
+	}
+
+
+	/**
+	 * Sets c to the point at the position, for agents moving their own coordinate in place
+	 * @param index kilometers from the start of the line, clamped to the line
+	 * @param s segment from segmentAt
+	 * @param c
+	 */
+	void pointAt(double index, int s, Coordinate c) {
+		if (x.length == 1 || index <= 0) {
+			c.x = x[0];
+			c.y = y[0];
+		}
+		else if (index >= lengthKm) {
+			c.x = x[x.length - 1];
+			c.y = y[y.length - 1];
+		}
+		else {
+			double span = km[s + 1] - km[s];
+			double f = (span > 0) ? (index - km[s]) / span : 0;
+			c.x = x[s] + f * (x[s + 1] - x[s]);
+			c.y = y[s] + f * (y[s + 1] - y[s]);
+		}
+	}
+
+
+	/**
+	 * @param c
+	 * @return distance in degrees from the first vertex
+	 */
+	double distanceToStart(Coordinate c) {
+		double dx = x[0] - c.x;
+		double dy = y[0] - c.y;
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+
+	/**
+	 * @param c
+	 * @return distance in degrees from the last vertex
+	 */
+	double distanceToEnd(Coordinate c) {
+		double dx = x[x.length - 1] - c.x;
+		double dy = y[y.length - 1] - c.y;
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+
+	/** @return the last segment of the line */
+	int lastSegment() {
+		return Math.max(0, x.length - 2);
+	}
+
+}
@@ -0,0 +1,76 @@
+/**
+ *  Disaster ABM in MASON
+ *  Aug2020
+ */
+
+package disaster;
+
+// Class imports
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import sim.util.geo.GeomPlanarGraphEdge;
+
+
+/**
+ * Number of agents on each road edge, indexed by edge id (see EdgeAttributes)
+ *   Agents only ever needed the size of World.edgeTraffic's per-edge lists, and taking an agent off
+ *   an edge searched its list, so each edge keeps a count instead. Counts are atomic, so agents
+ *   stepped in parallel can change edges safely.
+ *   The agents themselves are found on demand by agentsOn, for debugging and display.
+ */
+public class EdgeOccupancy {
+
+	private final AtomicIntegerArray counts;
+
+
+	/**
+	 * @param numEdges edges numbered at load
+	 */
+	public EdgeOccupancy(int numEdges) {
+		counts = new AtomicIntegerArray(numEdges);
+	}
+
+
+	/**
+	 * @param e
+	 * @return agents on the edge
+	 */
+	public int get(GeomPlanarGraphEdge e) {
+		return counts.get(EdgeAttributes.id(e));
+	}
+
+
+	/**
+	 * Moves an agent from one edge to the next
+	 * @param from the agent's old edge, null if it had none
+	 * @param to
+	 */
+	void move(GeomPlanarGraphEdge from, GeomPlanarGraphEdge to) {
+		if (from != null) {
+			counts.decrementAndGet(EdgeAttributes.id(from));
+		}
+		counts.incrementAndGet(EdgeAttributes.id(to));
+	}
+
+
+	/**
+	 * Lists the agents on an edge by scanning the population, for debugging and display only
+	 * @param e
+	 * @return the indvs and groups whose current edge is e
+	 */
+	public ArrayList<Agent> agentsOn(GeomPlanarGraphEdge e) {
+		ArrayList<Agent> on = new ArrayList<Agent>();
+		for (Indv a : Log.indvList) {
+			if (a.currentEdge == e) {
+				on.add(a);
+			}
+		}
+		for (Group g : Log.grpList) {
+			if (g.currentEdge == e) {
+				on.add(g);
+			}
+		}
+		return on;
+	}
+
+}
@@ -8,7 +8,7 @@ package disaster;
 
 // Class imports
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.Random;
 
 import com.vividsolutions.jts.geom.Coordinate;
@@ -18,10 +18,9 @@ import com.vividsolutions.jts.planargraph.Node;
 
 import sim.engine.SimState;
 import sim.engine.Steppable;
-import sim.field.geo.GeomVectorField;
+import sim.util.Bag;
 import sim.util.geo.GeomPlanarGraphDirectedEdge;
 import sim.util.geo.GeomPlanarGraphEdge;
-import sim.util.geo.MasonGeometry;
 
 
 /**
@@ -92,38 +91,43 @@ public class Effects implements Steppable {
     	double fleeSlow 	= Parameters.fleeSlowDegreesPerMin;			// 5 meters per min
     	double fleeFast 	= Parameters.fleeFastDegreesPerMin;		// 10 meters per min
     	
-    	// go through all agents
-		for (Indv a : Log.indvList) { // victimList) 
-			if (a.dead) { 
+    	// go through all agents; only the living within R3 and first responders are affected,
+    	// so with the agent store the others are skipped in a scan of its columns
+    	ArrayList<Indv> indvs = Log.indvList;
+    	if (world.agentStore != null) {
+    		indvs = world.agentStore.aliveNear(groundZero.getX(), groundZero.getY(), z3radius, AgentStore.FIRST_RESP);
+    	}
+		for (Indv a : indvs) { // victimList) 
+			if (a.getDead()) { 
 				continue; 
 			}	// skip dead agents
 
 			// Distance from ground zero
-			double dist = a.getLocation().geometry.distance(groundZero);    	
+			double dist = a.distanceTo(groundZero.getCoordinate());    	
 
 			//====================================
 	    	// identify agents within first radius
 			if (dist <= z1radius) {
-				a.dead = true;
-				a.dose = 10;			// not precise, but indicator of death outright from nWMD 100Sv=10,000REM
+				a.setDead(true);
+				a.setDose(10);			// not precise, but indicator of death outright from nWMD 100Sv=10,000REM
 				a.setHealthStatus(10);	// dead
 				r1Agents.add(a);	// add this agent to exposed list
 				killed = killed + 1;
-				Log.healthCat[(int)a.dose]++;  // ??????
+				Log.healthCat[(int)a.getDose()]++;  // ??????
 				
 				Log.indvDeaths++; // accounting: count death of each agent
 				
 				// how should we handle wanting to track where the dead bodies are?
 				// remove from at work, etc.
-				if ( a.atWork ) {
+				if ( a.getatWork() ) {
 					a.setatWork(false);
 					Log.atWorkCount -= 1;
 				}
-				if (a.atHome ) {
+				if (a.getatHome() ) {
 					a.setatHome(false);
 					Log.atHomeCount -= 1;
 				}
-				if ( a.onCommute ) {
+				if ( a.getonCommute() ) {
 					a.setonCommute(false);
 					Log.onCommuteCount -= 1;
 				}
@@ -138,31 +142,31 @@ public class Effects implements Steppable {
 			//=====================================
 	    	// identify agents within second radius
 			if ((dist > z1radius) && (dist <= z2radius)) {
-				a.dose = (int) (4+6*((z2radius - dist)/(z2radius-z1radius) * (z2radius - dist)/(z2radius-z1radius)) );   // d=health/d^2
+				a.setDose((int) (4+6*((z2radius - dist)/(z2radius-z1radius) * (z2radius - dist)/(z2radius-z1radius)) ));   // d=health/d^2
 				
-				if ((a.dose > 12)||(a.dose < 1)) { 
-					System.out.println("Effects>weird dose: in Zone2, dist= " + dist + " dose= " + a.dose); 
-					a.dose = 9;
+				if ((a.getDose() > 12)||(a.getDose() < 1)) { 
+					System.out.println("Effects>weird dose: in Zone2, dist= " + dist + " dose= " + a.getDose()); 
+					a.setDose(9);
 				}
 				
-				a.setHealthStatus((int)a.dose);
-				Log.healthCat[(int)a.dose]++;	// monitor health 
-				a.fleeing = true;					// set fleeing
+				a.setHealthStatus((int)a.getDose());
+				Log.healthCat[(int)a.getDose()]++;	// monitor health 
+				a.setFleeing(true);					// set fleeing
 				a.setGoal("flee");
 				a.setMoveRateKmPerStep(Spacetime.degToKilometers(fleeSlowest));  // convert degree movement rate to the model's kilometers standard
 				System.out.println("Effects>agent movement rate in km: " + a.getMoveRateKmPerStep());
 				Log.affectedFleeing ++;			// increase count of fleeing
 
 				// remove previous accounting
-				if ( a.atWork ) {
+				if ( a.getatWork() ) {
 					a.setatWork(false);
 					Log.atWorkCount --;
 					Log.IDPwork += 1;
 				} 
-				if (a.onCommute) {
+				if (a.getonCommute()) {
 					Log.onCommuteCount --; // changed from ++
 				}
-				if (a.atHome) {
+				if (a.getatHome()) {
 					a.setatHome(false);
 					Log.atHomeCount --;
 					Log.IDPhome += 1;
@@ -183,23 +187,23 @@ public class Effects implements Steppable {
 			//====================================
 	    	// identify agents within third radius
 			if ((dist > z2radius) && (dist <= z3radius)) {
-				a.dose = (int) (1+3*( (z3radius - dist)/(z3radius-z2radius) * (z3radius - dist)/(z3radius-z2radius)) );   // d=health/d^2
+				a.setDose((int) (1+3*( (z3radius - dist)/(z3radius-z2radius) * (z3radius - dist)/(z3radius-z2radius)) ));   // d=health/d^2
 
-				if ((a.dose > 12)||(a.dose < 1)) { 
-					System.out.println("Effects>weird in Zone3, dist= " + dist + " dose= " + a.dose); 
-					a.dose = 3;
+				if ((a.getDose() > 12)||(a.getDose() < 1)) { 
+					System.out.println("Effects>weird in Zone3, dist= " + dist + " dose= " + a.getDose()); 
+					a.setDose(3);
 				}
 				
-				a.setHealthStatus((int)a.dose);
-				Log.healthCat[(int)a.dose]++;	// monitor health 
-				a.fleeing = true;	// set fleeing		** should this be delayed?
+				a.setHealthStatus((int)a.getDose());
+				Log.healthCat[(int)a.getDose()]++;	// monitor health 
+				a.setFleeing(true);	// set fleeing		** should this be delayed?
 				a.setGoal("flee");
 				a.setMoveRateKmPerStep(Spacetime.degToKilometers(fleeSlow));	// convert degree movement rate to the model's kilometers standard
 
 				Log.affectedFleeing++;	// count
 				Log.popZone3++;
 
-				if ( a.atWork ) {
+				if ( a.getatWork() ) {
 					a.setatWork(false);
 					Log.atWorkCount -= 1;
 					Log.IDPwork += 1; 
@@ -238,7 +242,7 @@ public class Effects implements Steppable {
 			else {				
 				for (Group g : Log.grpList) {
 					// Distance from ground zero
-					double dist = g.getLocation().geometry.distance(groundZero);   
+					double dist = g.distanceTo(groundZero.getCoordinate());   
 					
 			    	// identify groups within first radius
 					if (dist <= z1radius) {
@@ -296,6 +300,14 @@ public class Effects implements Steppable {
 		// remove damaged road network nodes and edges
 		damageToRoadNetwork(world);
 		
+		// one search from all exits gives every agent its way out of the damage area
+		if (Parameters.evacuationRouting) {
+			world.evacuation = new EvacuationTable(world.roadGraph, nodesToGetOnOffRoadNetwork);
+		}
+		
+		// first responders search this registry for the neediest victim in range
+		world.victims = new VictimRegistry(Parameters.fleeFastDegreesPerMin, Log.indvList);
+		
 		System.out.println("Effects>detonation> ==============nWMD event end================");
 		
     }// end detonation
@@ -366,7 +378,7 @@ public class Effects implements Steppable {
      */
     public static boolean inExZone(Agent a) {
     	if ( (a == null) || (a.currentCoord == null) ) return false;
-    	double dist = a.getLocation().geometry.distance(groundZero);  
+    	double dist = a.distanceTo(groundZero.getCoordinate());  
     	if (dist > z2radius) return false;
     	return true;
     }
@@ -380,7 +392,7 @@ public class Effects implements Steppable {
      */
     public static boolean inAnyZone(Agent a) {
     	if ( (a == null) || (a.currentCoord == null) ) return false;
-    	double dist = a.getLocation().geometry.distance(groundZero);  
+    	double dist = a.distanceTo(groundZero.getCoordinate());  
     	if (dist > z3radius) return false;
     	return true;
     }
@@ -395,20 +407,14 @@ public class Effects implements Steppable {
     	// uses geo factory: fact
     	// uses ground zero point: groundZero
     	// uses array of nodes: modeChgNodes (generated here)
-       Coordinate coord = null;
-       Point point = null;
        int countNodes = 0;
        int countfound = 0;
        
- 	   Iterator<?> nodeIterator = world.roadNetwork.nodeIterator();
-       Node node = (Node) nodeIterator.next();
-
-       while (nodeIterator.hasNext()) {
+       // only nodes out to 1.2 * z3radius can qualify
+       for (Object o : world.nodeIndex.within(groundZero.getX(), groundZero.getY(), Parameters.z3radius * 1.2)) {
     	   countNodes++;
-    	   node = (Node) nodeIterator.next();
-    	   coord = node.getCoordinate();
-    	   point = fact.createPoint(coord);	   
-    	   double dist = groundZero.distance(point);
+    	   Node node = (Node) o;
+    	   double dist = groundZero.getCoordinate().distance(node.getCoordinate());
     	   
     	   if (dist > Parameters.z3radius) {
     		   if (dist < Parameters.z3radius * 1.2) { // 1.2 gets about 300 nodes nearby outside R3 
@@ -424,65 +430,50 @@ public class Effects implements Steppable {
      * Damages the road network edges with start/end nodes within the outer radius
      * Found edges have speed limits set to 0, allowing agents to detect a problem with the road
      * segment when the moveRate is set in commute(), carPool() or travelPath() methods
+     * The edges are gathered by radius first and updated in two passes over the edge attributes
      * @param world
      */
     static void damageToRdEdges(World world) {
-        Coordinate coord = null;
-        Point point = null;
-        int count = 0;
-        
-        Iterator<?> nodeIterator = world.roadNetwork.nodeIterator();
+        Bag damagedNodes = world.nodeIndex.within(groundZero.getX(), groundZero.getY(), z3radius);
+        int[] destroyed = new int[16];	// ids of edges leaving nodes within Z2
+        int[] slowed = new int[16];		// ids of edges leaving nodes between Z2 and Z3
+        int numDestroyed = 0;
+        int numSlowed = 0;
         
-        // Check each node in the roadnetwork
-        while (nodeIterator.hasNext())
+        // Check each node in the damage area
+        for (Object o : damagedNodes)
         {
-            Node node = (Node) nodeIterator.next();
-            coord = node.getCoordinate();
-     	   	point = fact.createPoint(coord);
+            Node node = (Node) o;
      	   	  	   	
-     	   	double dist = groundZero.distance(point); // find distance of node to groundZero
+     	   	double dist = groundZero.getCoordinate().distance(node.getCoordinate()); // find distance of node to groundZero
      	   	
-     	   	// if the distance of the node is within Z2, reduce speed on its edges to 0
-     	   	// these edges become impassable due to the detonation impact
-	    	// identify agents within second radius
-			if (dist <= z2radius) {
-				
-				// loop through outEdges of the node and update speed limit
-            	for (Object obj: node.getOutEdges().getEdges()) {
-            		// change the directed edge to a non-directed edge for code handling
-            		GeomPlanarGraphDirectedEdge dEdge = (GeomPlanarGraphDirectedEdge) obj;
-            		GeomPlanarGraphEdge edge = (GeomPlanarGraphEdge) dEdge.getEdge();
-            		
-            		// If the edge is in range and not yet impacted, 
-            		// reduce the speedlimit on the edge to 0, i.e. can't be traveled
-            		if  (world.edgesToSpeedLimit.get(edge) != 0 ) {
-            			// System.out.println("Effects->detonation->damageToRdEdges->edge: " + edge);
-            			world.edgesToSpeedLimit.replace(edge, (double) 0);
-            			count += 1;
-            		}
-            		
-            	}   // end for loop
-			}
-            if ( (dist > z2radius) && (dist <= z3radius) ) { 
-            	
-            	// loop through outEdges of the node and update speed limit
-            	for (Object obj: node.getOutEdges().getEdges()) {
-            		// change the directed edge to a non-directed edge for code handling
-            		GeomPlanarGraphDirectedEdge dEdge = (GeomPlanarGraphDirectedEdge) obj;
-            		GeomPlanarGraphEdge edge = (GeomPlanarGraphEdge) dEdge.getEdge();
-            		
-            		// If the edge is in Z3 range 
-            		// reduce the speedlimit to 10km/hour, i.e. difficult to travel
-            		if  (world.edgesToSpeedLimit.get(edge) != 0 ) {
-            			world.edgesToSpeedLimit.replace(edge, (10.0));
-            			count += 1;
-            		}
-            		
-            	}   // end for loop
-            	
-            }   // end if statement
-            
-        }    // end while loop
+        	for (Object obj: node.getOutEdges().getEdges()) {
+        		// change the directed edge to a non-directed edge for code handling
+        		GeomPlanarGraphDirectedEdge dEdge = (GeomPlanarGraphDirectedEdge) obj;
+        		int id = EdgeAttributes.id((GeomPlanarGraphEdge) dEdge.getEdge());
+        		
+    	    	// edges of nodes within Z2 become impassable due to the detonation impact
+        		if (dist <= z2radius) {
+        			if (numDestroyed == destroyed.length) {
+        				destroyed = Arrays.copyOf(destroyed, 2 * numDestroyed);
+        			}
+        			destroyed[numDestroyed++] = id;
+        		}
+        		// edges of nodes in Z3 are difficult to travel
+        		else {
+        			if (numSlowed == slowed.length) {
+        				slowed = Arrays.copyOf(slowed, 2 * numSlowed);
+        			}
+        			slowed[numSlowed++] = id;
+        		}
+        	}
+        }
+        
+        // reduce the speed limit to 0, i.e. can't be traveled, then to 10km/hour on edges not yet impacted
+        int count = world.edgeAttributes.damage(destroyed, numDestroyed, 0, EdgeAttributes.DESTROYED);
+        count += world.edgeAttributes.damage(slowed, numSlowed, 10.0, EdgeAttributes.DAMAGED);
+        world.updateEdgeSpeeds(destroyed, numDestroyed);
+        world.updateEdgeSpeeds(slowed, numSlowed);
         
         System.out.println("Effects>detonation>damageToRdEdges>number of edges destroyed: " + count);
     }
@@ -494,23 +485,15 @@ public class Effects implements Steppable {
      */
     // Need to further harm those agents whose homes/work locations are damaged in z3ring?
     static void damageToRoadNetwork(World world) {
-        Coordinate coord = null;
-        Point point = null;
         ArrayList<Node> damagedNodes = new ArrayList<Node>(); 
         int nodecount = 0;
         int startNumEdges = world.roadNetwork.getEdges().size(); // used for verification
-        // rewrite the roadIntersections as a new GeomVectorField usable for finding nearest Nodes
-        world.roadIntersections = new GeomVectorField();
-        
-        Iterator<?> nodenetIterator = world.roadNetwork.nodeIterator();
         
-        // Check each node in the roadnetwork
-        while (nodenetIterator.hasNext()) {
-            Node node = (Node) nodenetIterator.next();
-            coord = node.getCoordinate();
-     	   	point = fact.createPoint(coord);
+        // Check each node in the damage area
+        for (Object o : world.nodeIndex.within(groundZero.getX(), groundZero.getY(), z3radius)) {
+            Node node = (Node) o;
      	   	  	   	
-     	   	double dist = groundZero.distance(point); // find distance of node to groundZero
+     	   	double dist = groundZero.getCoordinate().distance(node.getCoordinate()); // find distance of node to groundZero
      	   	
      	   	// if the distance of the node is within innermost damaged zone, add it to an ArrayList of nodes for removal
             if (dist <= z2radius) { 
@@ -523,7 +506,7 @@ public class Effects implements Steppable {
             		damagedNodes.add(node);
             	}        	
             }           
-        }    // end while loop
+        }    // end for loop
         
         // Remove all nodes and associated edges in the damagedNodes ArrayList from the roadNetwork
         for (Node n: damagedNodes) {
@@ -531,20 +514,11 @@ public class Effects implements Steppable {
         	nodecount += 1;
         }
         
-        // rewrite the roadIntersections GeomVectorField to find nearest Nodes
-        Iterator<?> nodeIterator = world.roadNetwork.nodeIterator();
-        
-        while (nodeIterator.hasNext()) {
-        	// Create a GeometryVectorField of points representing road intersections
-            Node node = (Node) nodeIterator.next();
-            coord = node.getCoordinate();
-            point = fact.createPoint(coord);
-
-            world.roadIntersections.addGeometry(new MasonGeometry(point));
-        }
+        // remove the same nodes from the routing snapshot and its node index
+        world.removeRoadNodes(damagedNodes);
       
         System.out.println("Effects>detonation>damageToRoadNetwork>nodes removed: " + nodecount + " edges removed: " + (startNumEdges - world.roadNetwork.getEdges().size()));
-        System.out.println("Effect>detonation>damageToRoadNetworks>nodes in rewritten roadIntersections: " + world.roadIntersections.getGeometries().size());
+        System.out.println("Effect>detonation>damageToRoadNetworks>nodes remaining: " + world.roadNetwork.getNodes().size());
 
     }
     
@@ -575,10 +549,10 @@ public class Effects implements Steppable {
     	if (steps > Parameters.tDetonation) {
     		// check fatally exposed agents and evaluate their health    		
 			for (Indv a : r2Agents) { //dying Agents)		    		
-				if (!a.dead) {	// not dead
+				if (!a.getDead()) {	// not dead
 					pdeath = Math.random();	// random number used to see they should die this step
 					if (pdeath < 0.001)	{	// dies this step
-		    			a.dead = true;			// this agent has died
+		    			a.setDead(true);			// this agent has died
 		    			a.setHealthStatus(10);	// dead
 
 		    			Log.indvDeaths++; // accounting
@@ -594,14 +568,14 @@ public class Effects implements Steppable {
 			for (Indv a : r3Agents) { //dying Agents)
 				// no new exposures (until fallout calculations)
 				
-				if (!a.dead) { // not dead
+				if (!a.getDead()) { // not dead
 					// dies this step?
 					pdeath = Math.random();
-					double dose = a.dose;
+					double dose = a.getDose();
 					if ( ( (dose > 8) && (pdeath < (dose*0.00001)))		// death in 1-2 days
 						|| ( (dose <=8) && (pdeath < (dose*0.000005)) ) ) { // death 2-14 days
 						
-						a.dead = true;			// this index agent has died
+						a.setDead(true);			// this index agent has died
 						a.setHealthStatus(10);	// dead
 						
 						// if dead agent was in group, reset the leader
@@ -0,0 +1,121 @@
+/**
+ *  Disaster ABM in MASON
+ *  Aug2020
+ */
+
+package disaster;
+
+// Class imports
+import com.vividsolutions.jts.planargraph.Node;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import sim.util.geo.GeomPlanarGraphDirectedEdge;
+
+
+/**
+ * Shortest routes from every road node to the closest exit node outside the damage area
+ *   One multi-source Dijkstra runs backward from all exit nodes (Effects.nodesToGetOnOffRoadNetwork)
+ *   over the in-edges of the damaged network, and keeps the next edge and the remaining distance per
+ *   node. An agent then reads its whole route by following next edges, with no search of its own.
+ *   Distances are in the A* metric (straight line edge length in degrees). Edges with no speed
+ *   cannot be traveled and are left out.
+ *   The table belongs to one routing snapshot; it is built in Effects.detonation after the damage.
+ */
+public class EvacuationTable {
+
+	final RoadGraph graph;
+	final int numExits;
+	private final int[] nextEdge;		// node id -> slot of the first edge toward the closest exit, -1 at an exit or if none is reachable
+	private final double[] distance;	// node id -> distance to the closest exit, infinity if none is reachable
+
+
+	/**
+	 * @param graph routing snapshot of the damaged network
+	 * @param exits nodes where agents leave the damage area; nodes no longer in the snapshot are skipped
+	 */
+	public EvacuationTable(RoadGraph graph, List<Node> exits) {
+		this.graph = graph;
+		int n = graph.numNodes;
+		nextEdge = new int[n];
+		distance = new double[n];
+		Arrays.fill(nextEdge, -1);
+		Arrays.fill(distance, Double.POSITIVE_INFINITY);
+		long startTime = System.nanoTime();
+
+		NodeHeap heap = new NodeHeap(Math.max(1, n));
+		int count = 0;
+		for (Node exit : exits) {
+			int x = graph.nodeId(exit);
+			if (x >= 0 && distance[x] != 0) {
+				distance[x] = 0;
+				heap.insertOrDecrease(x, 0);
+				count++;
+			}
+		}
+		numExits = count;
+
+		// settle nodes in order of distance to the closest exit, relaxing the edges that lead into them
+		int reached = 0;
+		while (!heap.isEmpty()) {
+			int u = heap.pop();
+			reached++;
+			for (int i = graph.inStart[u]; i < graph.inStart[u + 1]; i++) {
+				int e = graph.inEdges[i];
+				if (graph.edgeSpeed[e] <= 0) {
+					continue; // damaged road, can't be traveled
+				}
+				int v = graph.edgeFrom[e];
+				double d = distance[u] + graph.edgeLength[e];
+				if (d < distance[v]) {
+					distance[v] = d;
+					nextEdge[v] = e;
+					heap.insertOrDecrease(v, d);
+				}
+			}
+		}
+
+		System.out.println("EvacuationTable>" + numExits + " exits reach " + reached + " of " + n
+			+ " nodes, built in (ms): " + (System.nanoTime() - startTime) / 1000000);
+	}
+
+
+	/**
+	 * @param start
+	 * @return true if an exit can be reached from the node
+	 */
+	public boolean reachesExit(Node start) {
+		int s = graph.nodeId(start);
+		return s >= 0 && distance[s] != Double.POSITIVE_INFINITY;
+	}
+
+
+	/**
+	 * @param start
+	 * @return distance from the node to its closest exit, infinity if no exit can be reached
+	 */
+	public double distanceToExit(Node start) {
+		int s = graph.nodeId(start);
+		return (s < 0) ? Double.POSITIVE_INFINITY : distance[s];
+	}
+
+
+	/**
+	 * Reads the route from a node to its closest exit out of the table
+	 * @param start
+	 * @return the path, empty if the node is an exit, null if no exit can be reached
+	 */
+	public ArrayList<GeomPlanarGraphDirectedEdge> pathToExit(Node start) {
+		if (!reachesExit(start)) {
+			return null;
+		}
+		ArrayList<GeomPlanarGraphDirectedEdge> path = new ArrayList<GeomPlanarGraphDirectedEdge>();
+		int x = graph.nodeId(start);
+		while (nextEdge[x] >= 0) {
+			path.add(graph.dirEdges[nextEdge[x]]);
+			x = graph.edgeTo[nextEdge[x]];
+		}
+		return path;
+	}
+
+}
@@ -10,17 +10,15 @@ package disaster;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Random;
 
 import com.vividsolutions.jts.geom.Coordinate;
-import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.planargraph.Node;
 
 import sim.engine.SimState;
-import sim.field.geo.GeomVectorField;
 import sim.util.Bag;
-import sim.util.geo.GeomPlanarGraph;
 import sim.util.geo.GeomPlanarGraphDirectedEdge;
 import sim.util.geo.MasonGeometry;
 
@@ -64,11 +62,11 @@ public class Group extends Agent {
 	public void setGrptype(String x)	{ this.grptype = x; }
     public void setLeaderID(String x)		{ this.leaderID = x; }
     public void setfullcarpool(boolean x)	{ this.fullcarpool = x; }
-    public void setDefunct(boolean x)	{ this.defunct = x; }
+    public void setDefunct(boolean x)	{ this.defunct = x; behaviorChanged(); }
     @Override
-	public void setHealthStatus(int x) 	{ this.healthStatus = x; }
-    public void setToWork(boolean x)	{ this.ToWork = x; }
-    public void setatWork(boolean x)	{ this.atWork = x; }
+	public void setHealthStatus(int x) 	{ this.healthStatus = x; behaviorChanged(); }
+    public void setToWork(boolean x)	{ this.ToWork = x; behaviorChanged(); }
+    public void setatWork(boolean x)	{ this.atWork = x; behaviorChanged(); }
     public void set_tcommuteStart(int x)	{ this.tcommuteStart = x; }
     public void set_tcommuteEnd(int x)	{ this.tcommuteEnd = x; }
     public void set_tcommuteTime(int x)	{ this.tcommuteTime = x; }
@@ -97,8 +95,8 @@ public class Group extends Agent {
      * @param agent
      * @param goal
      */ 
-	public Group(World world, long seed, Integer grpIDnum, Indv leader, Indv follower, String type) {
-		super(world, seed);
+	public Group(World world, Integer grpIDnum, Indv leader, Indv follower, String type) {
+		super(world);
 		
 		state = world;
 			    
@@ -136,10 +134,9 @@ public class Group extends Agent {
 		setEndNode(leader.getEndNode());
 		
 		// set the location to be displayed
-		GeometryFactory fact = new GeometryFactory();
 		setLocation(new MasonGeometry(fact.createPoint(new Coordinate(10, 10))));
 		Coordinate startCoord = null;
-		startCoord = leader.currentCoord;
+		startCoord = leader.shareCoord();
 		updatePosition(startCoord);
 		currentCoord = startCoord;
 		
@@ -166,13 +163,11 @@ public class Group extends Agent {
 			updateHealth();
 			
 			if (this.getSize() != 0) {		
-				if ((this.getHealthStatus() <= 1 ) || (this.getHealthStatus() == 80) || (this.getHealthStatus() == 89)) {  // 80 & 89 are temporary testing parameters for routing around the impact area
+				if (findBehavior().routine) {  // see findBehavior
 					routine();
 				}
-				else if (this.getHealthStatus() > 1) {
-					nonroutine(currentStep);
-				}
 				else {
+					nonroutine(currentStep);
 				}
 				
 				double dist = Spacetime.findKiloDist(beginCoord, currentCoord);
@@ -182,6 +177,39 @@ public class Group extends Agent {
 		}
 		
 	}
+
+
+	/**
+	 * Behavior state of the group
+	 * Health status, the average of the members' kept by updateHealth, decides between the routine
+	 * and the response to the event as it does for indvs (80 & 89 are temporary testing codes).
+	 * Carpools travel only between their commute times; affected carpools have no behavior yet,
+	 * while emergent groups respond every step.
+	 * @return the state
+	 */
+	@Override
+	Behavior findBehavior() {
+		if (getDefunct() || (this.getSize() == 0)) {
+			return Behavior.DEAD;
+		}
+		int health = getHealthStatus();
+		if ((health <= 1 ) || (health == 80) || (health == 89)) {
+			if ( (getToWork() && !getatWork()) || (!getToWork() && getatWork()) ) {
+				return Behavior.COMMUTING;
+			}
+			return Behavior.PARKED;
+		}
+		if (this.getGrptype() != "emergent") {
+			return Behavior.STRANDED;
+		}
+		if (getGoal() == "flee") {
+			return Behavior.FLEEING;
+		}
+		if (getGoal() == "findshelter") {
+			return Behavior.FINDING_SHELTER;
+		}
+		return Behavior.REACTING;
+	}
 	
 		
 	//======================================
@@ -261,7 +289,7 @@ public class Group extends Agent {
 
 		// get traffic data
 	    long currentStep = this.state.schedule.getSteps();
-		double speedLimit = this.state.edgesToSpeedLimit.get(currentEdge);
+		double speedLimit = this.state.edgeAttributes.speedLimit(currentEdge);
 		double moveRate = speedLimit / 60;  // (n kilometers / 60 steps) to get km/step
 		   
 		// if group becomes stuck begin to reroute
@@ -457,13 +485,11 @@ public class Group extends Agent {
 
 		   reachedDestination = true; // agent ends trip at the current point in order to reroute
 		   
-		   // initial distance for search of a new node
-		   double searchDist = 0.01; // start searching at for a distance in degrees for 1km
 		   // set the movementRate for movement towards the start node of the detour
 		   setMoveRateKmPerStep(10.0/60.0);  // movement rate for one step estimated to slow to 10km/hour in cars -- 10/60 steps
 		   
 		   // set the detour path startNode to the nearestNode
-		   setStartNode(findNearestNode(this.getGeometry(), world.roadIntersections, world.roadNetwork, searchDist));
+		   setStartNode(findNearestNode(this.getGeometry()));
 		   
 		   // check whether any location destination nodes were destroyed by impact -- set to new defaults
 		   // agents evaluate if they still have work or home location to return to 
@@ -473,11 +499,11 @@ public class Group extends Agent {
 			   // find a temp location
 			   int count = 0;
 			   double awayfromgroundzero = .005; // .01 in degrees
-			   Node tempnode = findTempLocationNode(world.roadIntersections, world.roadNetwork);
+			   Node tempnode = findTempLocationNode(world.nodeIndex);
 			   while (tempnode == null) {
 				   // look further away from ground zero for a startNode
-				   setStartNode(findsafeNearestNode(this.getGeometry(), world.roadIntersections, world.roadNetwork, world.waterField, searchDist));
-				   tempnode = findTempLocationNode(world.roadIntersections, world.roadNetwork);
+				   setStartNode(findsafeNearestNode(this.getGeometry(), world.waterMask));
+				   tempnode = findTempLocationNode(world.nodeIndex);
 				   count += 1;
 				   
 				   // only try to reset the start node using findsafeNearestNode() twice
@@ -487,8 +513,7 @@ public class Group extends Agent {
 					   double clong = this.getGeometry().geometry.getCoordinate().x;
 					   double newlat = clat + awayfromgroundzero;
 					   double newlong = clong + awayfromgroundzero;
-				   	   Coordinate tempCoord = new Coordinate(newlong, newlat);
-					   currentCoord = tempCoord;
+					   currentCoord = moveOwnCoord(newlong, newlat);
 					   updatePosition(currentCoord);
 
 					   return;
@@ -660,7 +685,7 @@ public class Group extends Agent {
 		//System.out.println("Group>nonroutine>findGrpMembers " + getID() + " goal: " + getGoal());
 		
 		if (!getGoalPoint().equals(mem.currentCoord)) {
-			setGoalPoint(mem.currentCoord);
+			setGoalPoint(mem.shareCoord());
 		}
 		else {
 			getGrpAway(currentStep);
@@ -738,7 +763,7 @@ public class Group extends Agent {
 		   double dgoal		= Math.sqrt(dLat*dLat + dLong*dLong);	// rough lat/long distance from current location to goal
 		   double dgzLat	= Parameters.tLat - cLat;
 		   double dgzLong	= Parameters.tLong - cLong;
-		   double dist 		= getLocation().geometry.distance(Parameters.groundZero);    
+		   double dist 		= distanceTo(Parameters.groundZero.getCoordinate());
 		   distFromGroundZero	 		= Math.sqrt(dgzLat*dgzLat + dgzLong*dgzLong); // dist from ground zero
 		   
 		   if (distFromGroundZero > Parameters.maxDistGZ) { 
@@ -772,14 +797,10 @@ public class Group extends Agent {
 						Effects.createFleeingGoalCord(this, state);						
 						
 						// test new fleeing goal point to see whether it is in the water
-						Coordinate savedCoord = currentCoord;
-						updatePosition(getGoalPoint());
-						Bag waterobjs = state.waterField.getCoveringObjects(getGeometry());
-						if (!waterobjs.isEmpty()) {
-							Coordinate newCoord = setAltGoalPt(state.waterField, getGoalPoint(), speedrate);
+						if (state.waterMask.isWater(getGoalPoint())) {
+							Coordinate newCoord = setAltGoalPt(state.waterMask, getGoalPoint(), speedrate);
 							setGrpGoalPt(newCoord);
 						}
-						updatePosition(savedCoord);
 						updateLocations();
 						
 					}
@@ -801,18 +822,18 @@ public class Group extends Agent {
 					}
 					else { // evaluate movement on foot
 						// try out the new coordinate position
-						Coordinate fleeingCoord = new Coordinate(newLong, newLat);
+						Coordinate fleeingCoord;
 
 						// if the new coordinate is not past the goal coodinate
 						// move step at the movement rate otherwise move all the way to the goal
 						if (Math.abs(speedLat) < Math.abs(dLat) || Math.abs(speedLong) < Math.abs(dLong)) { // take a step toward goal  
 								
-								Bag polity = state.waterField.getCoveringObjects(this.getGeometry());
+								boolean inWater = state.waterMask.isWater(getGeometry().geometry.getCoordinate());
 								// if the water polity is not empty (i.e. there is water at prospective position), stay at the current position
-								if (! polity.isEmpty() || getHealthStatus() == 72) { // not in the water
+								if (inWater || getHealthStatus() == 72) { // not in the water
 									// reset fleeing coordinate
-									fleeingCoord = findAltCoord(state.waterField, currentCoord, speedrate);
-									setGrpGoalPt(setAltGoalPt(state.waterField, fleeingCoord, speedrate));
+									fleeingCoord = findAltCoord(state.waterMask, currentCoord, speedrate);
+									setGrpGoalPt(setAltGoalPt(state.waterMask, fleeingCoord, speedrate));
 									currentCoord = fleeingCoord;
 									updatePosition(fleeingCoord);
 
@@ -828,18 +849,16 @@ public class Group extends Agent {
 
 								else {	
 									// move step toward goal
-									fleeingCoord = new Coordinate(newLong, newLat);
-									currentCoord = new Coordinate(newLong,newLat);
+									currentCoord = moveOwnCoord(newLong, newLat);
 
-									updatePosition(fleeingCoord);
+									updatePosition(currentCoord);
 									updateLocations();
 								}
 
 						}
 						else  // move all the way to the goal in one step
 						{
-							fleeingCoord = new Coordinate(gLong, gLat);
-							updatePosition(fleeingCoord);
+							updatePosition(getGoalPoint());
 							updateLocations();
 						}
 					}// eval on foot					
@@ -863,10 +882,8 @@ public class Group extends Agent {
 		  // convert meter foot rate to the model's kilometers standard unit
 		  double speedrate = Spacetime.degToKilometers(getMoveRateKmPerStep());
 		  
-		  // initial distance for search of a new node
-		  double searchDist = 0.02; // start searching at for a distance in degrees for 1km
 		  
-		  Node startNode = findsafeNearestNode(this.getGeometry(), state.roadIntersections, state.roadNetwork, state.waterField, searchDist);
+		  Node startNode = findsafeNearestNode(this.getGeometry(), state.waterMask);
 		  if (startNode == null) {
 			  return;
 		  }
@@ -877,9 +894,9 @@ public class Group extends Agent {
 		  setGoalPoint(getStartNode().getCoordinate()); // reset goal coordinate
 
 		  if ( getGoalNode() == null || getGoalNode().getCoordinate() == null) {
-			  Node tempNode = findTempLocationNode(state.roadIntersections, state.roadNetwork);
+			  Node tempNode = findTempLocationNode(state.nodeIndex);
 			  if (tempNode == null) {
-				  tempNode = findsafeNearestNode(this.getGeometry(), state.roadIntersections, state.roadNetwork, state.waterField, searchDist);
+				  tempNode = findsafeNearestNode(this.getGeometry(), state.waterMask);
 			  }
 
 			  setGoalNode(tempNode);		  
@@ -894,16 +911,26 @@ public class Group extends Agent {
 			  sethaveDetour(true);
 		  }
 		  else {
-			   // no path to homeNode; move to a new random location then search
+			   // no path to homeNode; take the evacuation table route to the closest exit if there is one
+			   List<GeomPlanarGraphDirectedEdge> evacPath = findEvacuationPath(getStartNode());
+			   if (evacPath != null) {
+				   currentPath = evacPath;
+				   setGoalNode(evacPath.get(evacPath.size()-1).getToNode());  // agents shelter at the exit node
+				   setEndNode(getGoalNode());
+				   setGoalPoint(getGoalNode().getCoordinate()); // reset goal coordinate
+				   setneedReroute(false);
+				   sethaveDetour(true);
+				   return;
+			   }
+			   // otherwise move to a new random location then search
 			   int count = 0;
 			   double movedist = .0005; // .01 in degrees
 			   // while no path is found to a random temporary node, reset the random startnode and try again
-			   searchDist = .02;
-			   Node tempnode = findTempLocationNode(state.roadIntersections, state.roadNetwork);
+			   Node tempnode = findTempLocationNode(state.nodeIndex);
 			   while (tempnode == null) {
 				   // look further away from ground zero for a startNode
-				   setStartNode(findsafeNearestNode(this.getGeometry(), state.roadIntersections, state.roadNetwork, state.waterField, searchDist));
-				   tempnode = findTempLocationNode(state.roadIntersections, state.roadNetwork);
+				   setStartNode(findsafeNearestNode(this.getGeometry(), state.waterMask));
+				   tempnode = findTempLocationNode(state.nodeIndex);
 				   count += 1;
 
 				   // only try to reset the start node using findsafeNearestNode() once more
@@ -917,8 +944,7 @@ public class Group extends Agent {
 					   double newlat = clat + movelat;
 					   double newlong = clong + movelong;
 
-				   	   Coordinate tempCoord = new Coordinate(newlong, newlat);
-					   currentCoord = tempCoord;
+					   currentCoord = moveOwnCoord(newlong, newlat);
 					   updatePosition(currentCoord);
 
 					   return;
@@ -972,97 +998,36 @@ public class Group extends Agent {
 	   * Unverified method
 	   * Placeholder for carpool groups routing around impact area
 	   * @param point
-	   * @param nodefield
-	   * @param roadNet
-	   * @param blockedfield
-	   * @param startDistance
+	   * @param water
 	   * @return
 	   */
-	 public Node findsafeNearestNode(MasonGeometry point, GeomVectorField nodefield, GeomPlanarGraph roadNet, GeomVectorField blockedfield, double startDistance) {
-		   Bag candidates = nodefield.getGeometries(); //world.roadIntersections.getGeometries();
-		   double dist = startDistance;
-		   int count = 0;
-		   int loopcount = 0;
-		   while (true) {
-			   loopcount += 1;
-			   // simply increase or decrease distance to find an appropriate number of candidates
-			   candidates = nodefield.getObjectsWithinDistance(point, dist);  //world.roadIntersections.getObjectsWithinDistance(point, dist);
-			   // remove any points that are within Zone 3 + .01 degrees
-			   for (Object o: candidates) {
-				   MasonGeometry geo = (MasonGeometry) o;
-				   if (geo.geometry.distance(Parameters.groundZero) <= (Parameters.z3radius+.01)) {
-					   candidates.remove(o);
-					   count += 1;
-				   }
-			   }
-
-			   count = 0; // reset removed candidate count
-			   if (loopcount == 20) {
-				   // agent couldn't find a candidate node, flee further out with a randomCoord move
-				   setGoal("flee");
-				   updateMemGoals();
-				   setneedReroute(false);
-				   Coordinate newCoord = findRandCoord(blockedfield, this.currentCoord, this.getMoveRateKmPerStep());
-				   this.updatePosition(newCoord);
-				   return null;
-			   }
-
-			   if (candidates.size() == 0) {
-				   dist *= 10;
-			   }
-			   else if (candidates.size() > 3) {
-				   dist *= 0.5;			   
-			   }
-			   else { break; }	   
-		   }
-		   
-		   double minDist = Double.MAX_VALUE;
-		   MasonGeometry nearest = null;
-		   
-		   // refinement step: now it's time to find the nearest among candidates
-		   for (Object ele : candidates) {
-			   MasonGeometry geo = (MasonGeometry) ele;
-			   double tmp = geo.geometry.distance(point.geometry);
-			   if (minDist > tmp) {
-				   nearest = geo;
-				   minDist = tmp;
-			   }
+	 public Node findsafeNearestNode(MasonGeometry point, WaterMask water) {
+		   // nearest node outside Zone 3 + .01 degrees
+		   Coordinate c = point.geometry.getCoordinate();
+		   Node nearestNode = state.nodeIndex.nearest(c.x, c.y, NodeIndex.outside(Parameters.groundZero, Parameters.z3radius + .01));
+		   if (nearestNode == null) {
+			   // agent couldn't find a candidate node, flee further out with a randomCoord move
+			   setGoal("flee");
+			   updateMemGoals();
+			   setneedReroute(false);
+			   Coordinate newCoord = findRandCoord(water, this.currentCoord, this.getMoveRateKmPerStep());
+			   this.updatePosition(newCoord);
+			   return null;
 		   }
- 
-		   Bag nearestNodes = nodefield.getCoveredObjects(nearest); 
-		   MasonGeometry nearestObj = (MasonGeometry) nearestNodes.get(0);
-		   Coordinate nearestNodeCoord = nearestObj.geometry.getCoordinate();
-		   
-		   // Now grab the node in the network at the nearest geometry in the node field.
-		   Node nearestNode = null; 
-		   
-	      Iterator<?> nodeIterator = roadNet.nodeIterator();
-	      
-	      while (nodeIterator.hasNext())
-	      {
-	      	// Create a GeometryVectorField of points representing road intersections
-	          Node node = (Node) nodeIterator.next();
-	          Coordinate coord = node.getCoordinate();
-	          if (nearestNodeCoord == coord) {
-	       	   nearestNode = node;
-	          }
-	      }
-
-	      return nearestNode;
-	  }
+		   return nearestNode;
+	 }
 	
 	
 	/**
 	   * Finds a temporary Node location 1km near the agent
 	   * removes nodes too close to ground zero
 	   * checks for good path
-	   * @param nodeField
-	   * @param roadNet
+	   * @param nodes node index of the current road network
 	   * @return
 	   */
-	  Node findTempLocationNode(GeomVectorField nodeField, GeomPlanarGraph roadNet) {
+	  Node findTempLocationNode(NodeIndex nodes) {
 		  // temporary method to put agents at a random location node near its current coordinate
-		  ArrayList<GeomPlanarGraphDirectedEdge> testpath = null;
+		  List<GeomPlanarGraphDirectedEdge> testpath = null;
 		  int randomNum = 0;
 		  Node randomNode = null; 
 		  int count = 0;
@@ -1070,16 +1035,18 @@ public class Group extends Agent {
 		  // look for location 1km away from stuck location --- in some cases less than this produced not enough node locations
 		  double dist = .01;  // 1km -- ~.01 degrees
 		  // find nodes in the modified roadNetwork within distance
-		  Bag nearestNodes = nodeField.getObjectsWithinDistance(this.getGeometry(), dist);
+		  Coordinate here = this.getGeometry().geometry.getCoordinate();
 		  
 		  // remove nodes too close to groundzero (inside z3radius), too close to the agent (within min distance of .0001, with null coordinates),
 		  // or if has to pass close to ground zero to get there or 
 		  // if the proposed node distance to ground zero is closer to ground zero than the current location, remove it from the list of candidates
-		  for (Object o: nearestNodes) {
-			  MasonGeometry geo = (MasonGeometry) o;
-			  if (geo.geometry.distance(this.getGeometry().geometry) < .0001 || geo.geometry.distance(Parameters.groundZero) <= (Parameters.z3radius + .01)
-					  || geo.geometry.getCoordinate() == null || geo.geometry.distance(Parameters.groundZero) <= this.getGeometry().geometry.distance(Parameters.groundZero)) {
-				  nearestNodes.remove(o);
+		  double hereToGroundZero = here.distance(Parameters.groundZero.getCoordinate());
+		  Bag nearestNodes = new Bag();
+		  for (Object o: nodes.within(here.x, here.y, dist)) {
+			  Coordinate c = ((Node) o).getCoordinate();
+			  double toGroundZero = c.distance(Parameters.groundZero.getCoordinate());
+			  if (c.distance(here) >= .0001 && toGroundZero > (Parameters.z3radius + .01) && toGroundZero > hereToGroundZero) {
+				  nearestNodes.add(o);
 			  }
 		  }
 		  
@@ -1090,18 +1057,10 @@ public class Group extends Agent {
 				  return null;
 			  }
 		  
-			  // pick a random node MasonGeometry by its Index
+			  // pick a random node by its Index
 			  randomNum = new Random().nextInt(numNodes);
-			  MasonGeometry randomgeo = (MasonGeometry) nearestNodes.get(randomNum);	  
-		  
-			  // Use nodeIterator to find and assign the Node in RoadNetwork that is at the random MasonGeometry	   
-			  Iterator<?> nodeIterator = roadNet.nodeIterator();
-	       
-			  while (randomNode == null) {
-				  Node node = (Node) nodeIterator.next();
-				  if (node.getCoordinate().equals2D(randomgeo.geometry.getCoordinate())) {
-					  randomNode = node;
-				  }			  
+			  if (randomNode == null) {
+				  randomNode = (Node) nearestNodes.get(randomNum);
 			  }
 
 			  testpath = findNewAStarPath(getStartNode(), randomNode);
@@ -1124,123 +1083,63 @@ public class Group extends Agent {
 	 * @param speed
 	 * @return
 	 */
-	public Coordinate findRandCoord(GeomVectorField water, Coordinate Coord, double speed) {
-		  // create 4 test coordinates
+	public Coordinate findRandCoord(WaterMask water, Coordinate Coord, double speed) {
+		  // create four direction probabilities; a direction into the water is never taken
+		  // the test positions are checked as x/y values, so only the chosen one becomes a Coordinate
 		  double move = speed;
-		  Coordinate testPosX = new Coordinate((Coord.x+move),Coord.y);
-		  Coordinate testNegX = new Coordinate((Coord.x-move),Coord.y);
-		  Coordinate testPosY = new Coordinate(Coord.x, (Coord.y+move));
-		  Coordinate testNegY = new Coordinate(Coord.x, (Coord.y-move));
-		  
-		  // create four direction probabilities
-		  double north = 1;
-		  double south = 1;
-		  double east = 1;
-		  double west = 1;
-		  
-		  Bag candidateCoords = new Bag();
-		  Coordinate alternativeCoord = new Coordinate();
+		  double east = water.isWater(Coord.x+move, Coord.y) ? 0.0 : 0.5;
+		  double west = water.isWater(Coord.x-move, Coord.y) ? 0.0 : 0.5;
+		  double north = water.isWater(Coord.x, Coord.y+move) ? 0.0 : 0.5;
+		  double south = water.isWater(Coord.x, Coord.y-move) ? 0.0 : 0.5;
 		  
-		  // Add coordinates not on water to a Bag of candidates for testing 
-		  // Set the direction probabilities based on whether it is in the water
-		  // test PosX
-		  updatePosition(testPosX);
-		  Bag waterobjects1 = water.getCoveringObjects(this.getGeometry());
-		  if ( waterobjects1.isEmpty() ) {
-			  candidateCoords.add(testPosX);
-			  east = 0.5;
-		  }	  
-		  else east = 0.0;
-		  
-		  // test NegX
-		  updatePosition(testNegX);
-		  Bag waterobjects2 = water.getCoveringObjects(this.getGeometry());
-		  if ( waterobjects2.isEmpty() ) {
-			  candidateCoords.add(testNegX);
-			  west = 0.5;
-		  }	  
-		  else west = 0.0;
-		  
-		  // test PosY
-		  updatePosition(testPosY);
-		  Bag waterobjects3 = water.getCoveringObjects(this.getGeometry());
-		  if ( waterobjects3.isEmpty() ) {
-			  candidateCoords.add(testPosY);
-			  north = 0.5;
+		  if (east + west + north + south == 0) {
+			  // no candidates, stay in place
+			  return Coord;
 		  }
-		  else north = 0.0;
 		  
-		  // test NegY
-		  updatePosition(testNegY);
-		  Bag waterobjects4 = water.getCoveringObjects(this.getGeometry());
-		  if ( waterobjects4.isEmpty() ) {
-			  candidateCoords.add(testNegY);
-			  south = 0.5;
+		  // test each candidate direction, east, west, north then south, for the distance farthest from ground zero
+		  // assign max dist from ground zero a higher probability
+		  Coordinate gz = Parameters.groundZero.getCoordinate();
+		  double maxDist = 0;
+		  double tempDist;
+		  if (east > 0 && (tempDist = distance(Coord.x+move, Coord.y, gz)) > maxDist) {
+			  maxDist = tempDist;
+			  east = 0.7;
 		  }
-		  else south = 0.0;
-		  
-		  if (candidateCoords.size() == 0) {
-			  alternativeCoord = Coord;
+		  if (west > 0 && (tempDist = distance(Coord.x-move, Coord.y, gz)) > maxDist) {
+			  maxDist = tempDist;
+			  west = 0.7;
 		  }
-		  else {  
-			  Coordinate tempCoord = null;
-			  
-			  // test each remaining candidate coordinate for the distance farthest from ground zero
-			  double maxDist = 0;
-			  for (Object o: candidateCoords) {		  
-				  tempCoord = (Coordinate) o;
-				  double tempDist = tempCoord.distance(Parameters.groundZero.getCoordinate()); // for NWMD
-				  if ( tempDist > maxDist ) {
-					  maxDist = tempDist;
-					  // assign max dist from ground zero a higher probability
-					  if (tempCoord.equals2D(testNegY)) {
-						  south = 0.7;
-					  }
-					  else if (tempCoord.equals2D(testPosY)) {
-						  north = 0.7;
-					  }
-					  else if (tempCoord.equals2D(testNegX)) {
-						  west = 0.7;
-					  }
-					  else east = 0.7;
-				  }
-			  }
-			  
-			  double total = north+south+east+west;
-			  double normalizedNorth = north/total;
-			  double normalizedSouth = south/total;
-			  double normalizedEast = east/total;
-			  double normalizedWest = west/total;
-			  // Cumulative distribution function (CDF)
-			  double sum = 0.0;
-			  double cdfNorth = normalizedNorth;
-			  sum += normalizedNorth;
-			  double cdfSouth = sum + normalizedSouth;
-			  sum += normalizedSouth;
-			  double cdfEast = sum + normalizedEast;
-			  sum += normalizedEast;
-			  double cdfWest = sum + normalizedWest;
-			  
-			  Random rnd = new Random();
-			  double randomDirection = rnd.nextDouble();
-			  
-			  if(randomDirection < cdfNorth) {
-				  // you should go to north
-				  alternativeCoord = testPosY;
-			  } else if(randomDirection < cdfSouth) {
-				  // you should go to south
-				  alternativeCoord = testNegY;
-			  } else if(randomDirection < cdfEast) {
-				  // you should go to east
-				  alternativeCoord = testPosX;
-			  } else {
-				  // go west
-				  alternativeCoord = testNegX;
-			  }		  
-			  
+		  if (north > 0 && (tempDist = distance(Coord.x, Coord.y+move, gz)) > maxDist) {
+			  maxDist = tempDist;
+			  north = 0.7;
+		  }
+		  if (south > 0 && (tempDist = distance(Coord.x, Coord.y-move, gz)) > maxDist) {
+			  maxDist = tempDist;
+			  south = 0.7;
 		  }
 		  
-		  return alternativeCoord;  
+		  double total = north+south+east+west;
+		  // Cumulative distribution function (CDF)
+		  double cdfNorth = north/total;
+		  double cdfSouth = cdfNorth + south/total;
+		  double cdfEast = cdfSouth + east/total;
+		  
+		  double randomDirection = state.random.nextDouble();
+		  
+		  if(randomDirection < cdfNorth) {
+			  // you should go to north
+			  return new Coordinate(Coord.x, (Coord.y+move));
+		  } else if(randomDirection < cdfSouth) {
+			  // you should go to south
+			  return new Coordinate(Coord.x, (Coord.y-move));
+		  } else if(randomDirection < cdfEast) {
+			  // you should go to east
+			  return new Coordinate((Coord.x+move), Coord.y);
+		  } else {
+			  // go west
+			  return new Coordinate((Coord.x-move), Coord.y);
+		  }
 	  }
 
 
@@ -1251,7 +1150,7 @@ public class Group extends Agent {
 	 * @param speed
 	 * @return
 	 */
-	public Coordinate findAltCoord(GeomVectorField water, Coordinate Coord, double speed) {  
+	public Coordinate findAltCoord(WaterMask water, Coordinate Coord, double speed) {  
 		  // create 4 coordinates to test the direction of the water
 		  double move = speed;
 		  Coordinate testPosX = new Coordinate((Coord.x+move),Coord.y);
@@ -1259,36 +1158,28 @@ public class Group extends Agent {
 		  Coordinate testPosY = new Coordinate(Coord.x, (Coord.y+move));
 		  Coordinate testNegY = new Coordinate(Coord.x, (Coord.y-move));
 		  
-		  MasonGeometry testPosLat = new MasonGeometry(fact.createPoint(testPosX));
-		  MasonGeometry testNegLat = new MasonGeometry(fact.createPoint(testNegX));
-		  MasonGeometry testPosLong = new MasonGeometry(fact.createPoint(testPosY));
-		  MasonGeometry testNegLong = new MasonGeometry(fact.createPoint(testNegY));
 		  
 		  Bag candidateCoords = new Bag();
 		  Coordinate altCoord = new Coordinate();
 		  
 		  // Add coordinates not on water to a Bag of candidates for testing 
 		  // test PosX  
-		  Bag waterobjects1 = water.getCoveringObjects(testPosLat.getGeometry());
-		  if ( waterobjects1.isEmpty() ) {
+		  if ( !water.isWater(testPosX) ) {
 			  candidateCoords.add(testPosX);
 		  }	  
 		  
 		  // test NegX
-		  Bag waterobjects2 = water.getCoveringObjects(testNegLat.getGeometry());
-		  if ( waterobjects2.isEmpty() ) {
+		  if ( !water.isWater(testNegX) ) {
 			  candidateCoords.add(testNegX);
 		  }	
 		  
 		  // test PosY
-		  Bag waterobjects3 = water.getCoveringObjects(testPosLong.getGeometry());
-		  if ( waterobjects3.isEmpty() ) {
+		  if ( !water.isWater(testPosY) ) {
 			  candidateCoords.add(testPosY);
 		  }
 		  
 		  // test NegY
-		  Bag waterobjects4 = water.getCoveringObjects(testNegLong.getGeometry());
-		  if ( waterobjects4.isEmpty() ) {
+		  if ( !water.isWater(testNegY) ) {
 			  candidateCoords.add(testNegY);
 		  }	  
 		  
@@ -1313,7 +1204,7 @@ public class Group extends Agent {
 	 * @param speed
 	 * @return
 	 */
-	public Coordinate setAltGoalPt(GeomVectorField water, Coordinate Coord, double speed) {  
+	public Coordinate setAltGoalPt(WaterMask water, Coordinate Coord, double speed) {  
 		  // create 4 coordinates to test the direction of the water
 		  double move = speed*10;
 		  Coordinate testPosX = new Coordinate((Coord.x+move),Coord.y);
@@ -1321,39 +1212,31 @@ public class Group extends Agent {
 		  Coordinate testPosY = new Coordinate(Coord.x, (Coord.y+move));
 		  Coordinate testNegY = new Coordinate(Coord.x, (Coord.y-move));
 		  
-		  MasonGeometry testPosLat = new MasonGeometry(fact.createPoint(testPosX));
-		  MasonGeometry testNegLat = new MasonGeometry(fact.createPoint(testNegX));
-		  MasonGeometry testPosLong = new MasonGeometry(fact.createPoint(testPosY));
-		  MasonGeometry testNegLong = new MasonGeometry(fact.createPoint(testNegY));
 		  
 		  Bag candidateCoords = new Bag();
 		  Coordinate altGoal = new Coordinate();
 		  
 		  // Add coordinates not on water to a Bag of candidates for testing 
 		  // test PosX  
-		  Bag waterobjects1 = water.getCoveringObjects(testPosLat.getGeometry());
-		  if ( waterobjects1.isEmpty() ) {
+		  if ( !water.isWater(testPosX) ) {
 			  candidateCoords.add(testPosX);
 		  }	  
 		  
 		  // test NegX
-		  Bag waterobjects2 = water.getCoveringObjects(testNegLat.getGeometry());
-		  if ( waterobjects2.isEmpty() ) {
+		  if ( !water.isWater(testNegX) ) {
 			  candidateCoords.add(testNegX);
 		  }	
 		  
 		  // test PosY
-		  Bag waterobjects3 = water.getCoveringObjects(testPosLong.getGeometry());
-		  if ( waterobjects3.isEmpty() ) {
+		  if ( !water.isWater(testPosY) ) {
 			  candidateCoords.add(testPosY);
 		  }
 		  
 		  // test NegY
-		  Bag waterobjects4 = water.getCoveringObjects(testNegLong.getGeometry());
-		  if ( waterobjects4.isEmpty() ) {
+		  if ( !water.isWater(testNegY) ) {
 			  candidateCoords.add(testNegY);
 		  }
-		  	  
+			  
 		  // test each candidate coordinate for the distance farthest from ground zero
 		  Coordinate tempCoord = null;
 		  double maxDist = 0;
@@ -1510,7 +1393,11 @@ public class Group extends Agent {
 	 */
 	void remMember(Indv oldMem) {
 		this.idsToMem.remove(oldMem.getID(), oldMem);
+		behaviorChanged();  // the group may be left empty
 		oldMem.setinGroup(false);
+		if (oldMem.currentCoord == currentCoord) {
+			oldMem.currentCoord = shareCoord();  // the group's own coordinate moves on with the group, see updateLocations
+		}
 		
 		// update the emergent network
 		if (getGrptype() == "emergent") {
@@ -1527,6 +1414,9 @@ public class Group extends Agent {
 					Log.inactvemerGrps += 1;
 					// if group is defunct, remaining member is no longer in a group
 					a.setinGroup(false);
+					if (a.currentCoord == currentCoord) {
+						a.currentCoord = shareCoord();
+					}
 				}
 				
 				// update emergent network of every member, but the old member
@@ -1543,6 +1433,8 @@ public class Group extends Agent {
 	
 	/**
 	 * Update group members' locations
+	 * Members share the group's currentCoord, which may be the group's own coordinate moving in place:
+	 * they are given a copy when they leave, see remMember
 	 */
 	void updateLocations() {
 		for (Indv mem: idsToMem.values()) {
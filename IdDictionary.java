@@ -0,0 +1,73 @@
+/**
+ *  Disaster ABM in MASON
+ *  Aug2020
+ */
+
+package disaster;
+
+// Class imports
+import java.util.ArrayList;
+import java.util.HashMap;
+
+
+/**
+ * Dictionary of the String IDs read from the input files, numbering each distinct ID 0, 1, 2, ...
+ *   Dense numbers let WorldBuilder keep ID sets as BitSets, e.g. the road IDs used to verify
+ *   work places, so membership tests no longer scan a list for every population row.
+ *   canonical() hands back one shared String per ID for fields that many agents repeat.
+ *   Agent, home and work IDs are still compared by reference in places, so they are not canonicalized.
+ */
+public class IdDictionary {
+
+	private final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+	private final ArrayList<String> names = new ArrayList<String>();
+
+
+	/**
+	 * @param name
+	 * @return the number of the ID, numbering it if it is new
+	 */
+	public int intern(String name) {
+		Integer id = ids.get(name);
+		if (id == null) {
+			id = names.size();
+			ids.put(name, id);
+			names.add(name);
+		}
+		return id;
+	}
+
+
+	/**
+	 * @param name
+	 * @return the number of the ID, or -1 if it was never interned
+	 */
+	public int lookup(String name) {
+		Integer id = ids.get(name);
+		return (id == null) ? -1 : id;
+	}
+
+
+	/**
+	 * @param id
+	 * @return the ID with this number
+	 */
+	public String name(int id) {
+		return names.get(id);
+	}
+
+
+	/**
+	 * @param name
+	 * @return the dictionary's own copy of the ID
+	 */
+	public String canonical(String name) {
+		return names.get(intern(name));
+	}
+
+
+	public int size() {
+		return names.size();
+	}
+
+}
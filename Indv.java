@@ -11,16 +11,13 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Random;
 import com.vividsolutions.jts.geom.Coordinate;
-import com.vividsolutions.jts.geom.GeometryFactory;
-import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.planargraph.Node;
 
 import sim.engine.SimState;
-import sim.field.geo.GeomVectorField;
 import sim.util.Bag;
-import sim.util.geo.GeomPlanarGraph;
 import sim.util.geo.GeomPlanarGraphDirectedEdge;
 import sim.util.geo.GeomPlanarGraphEdge;
 import sim.util.geo.MasonGeometry;
@@ -45,9 +42,9 @@ public class Indv extends Agent{
 	private String sex;
 
 	// Health
-    public boolean dead = false;
+    private boolean dead = false;
     //public double doubleHealth = 0.0;
-    public double dose = 0.0;			// how much radiation the agent has received (units: Sv, 1=100REM)
+    private double dose = 0.0;			// how much radiation the agent has received (units: Sv, 1=100REM)
 	
 	//private int hhtype;
     /**
@@ -90,18 +87,17 @@ public class Indv extends Agent{
 	// Schedule data and commuting and movement statistics
 	boolean StayAtHome; // agent is a stay-at-home agent
 	boolean ToWork;  // agent going to (needs to be at) work
-	boolean atWork;  // agent is at work
-	boolean atHome;  // agent is at home
-	boolean onCommute;// agent is commuting
-	boolean fleeing;  // agent is fleeing
+	private boolean atWork;  // agent is at work
+	private boolean atHome;  // agent is at home
+	private boolean onCommute;// agent is commuting
+	private boolean fleeing;  // agent is fleeing
 	boolean isHomeless;  // agent no longer has a home
 	private double commutedist;
 	private int tcommuteStart;
 	private int tcommuteEnd;
 	private int tcommuteTime;
 	
-	ArrayList<GeomPlanarGraphDirectedEdge> commutePath = // path agent travels
-			new ArrayList<GeomPlanarGraphDirectedEdge>();
+	List<GeomPlanarGraphDirectedEdge> commutePath = CompactPath.EMPTY; // path agent travels, shared, see CompactPath
 	
 	
 	// Emergency Response Attributes
@@ -109,10 +105,19 @@ public class Indv extends Agent{
 	private double distFromGroundZero = 9999;				// distance agent is from ground zero
 	
 	// Emergency Response Status
-	int vStatus = 0;		// victim status: 0 - AOK, 1 - being aided,  2 - was aided
+	private int vStatus = 0;		// victim status: 0 - AOK, 1 - being aided,  2 - was aided
 	int vStart = 0;			// step of start of aid
 	int vStop = 0;			// step aid stopped
 	int frStatus = 0;		// first responder status: 0 - not first responder, 1 - available to aid, 2 - aiding
+	VictimRegistry victims = null;	// registry holding this agent while it can be aided, set at detonation
+	int victimRank;			// position in Log.indvList, breaks ties between victims
+	long victimCell;		// registry cell and heap slot, slot -1 when not in the registry
+	int victimSlot = -1;
+	
+	// Column holding the agent's health, dose, flags, victim status and commute totals in place of
+	// its fields, set as the agent is constructed if the population is stored (see AgentStore)
+	AgentStore store = null;
+	int slot;				// column in the store, the position in Log.indvList once the population is final
 	
 
 	
@@ -126,35 +131,39 @@ public class Indv extends Agent{
 	
 	public void setTract(String x)		{ this.tract = x; }
 	public void setCounty(String x)		{ this.county = x; }
-	public void setIsFirstResp(boolean x)	{ this.firstResp = x; }		// first responder flag
+	public void setIsFirstResp(boolean x)	{ if (store != null) store.setFlag(slot, AgentStore.FIRST_RESP, x); else this.firstResp = x; behaviorChanged(); }		// first responder flag
     public void setAge(int x)			{ this.age = x; }
     public void setSex(String x)			{ this.sex = x; }
-    public void setStayAtHome(boolean x) { this.StayAtHome = x; }
+    public void setStayAtHome(boolean x) { this.StayAtHome = x; behaviorChanged(); }
     public void setHomeID(String x)		{ this.homeID = x; }
     public void setWorkID(String x)		{ this.workID = x; }
     public void setHmRdID(String x)		{ this.hmRdID = x; }
     public void setWrkRdID(String x)	{ this.wrkRdID = x; }
     public void setHomeNode(Node x)		{ this.homeNode = x; }
     public void setWorkNode(Node x)		{ this.workNode = x; } 
-    public void setToWork(boolean x)	{ this.ToWork = x; }
-    public void setatWork(boolean x)	{ this.atWork = x; }
-    public void setatHome(boolean x)	{ this.atHome = x; }
-    public void setonCommute(boolean x)	{ this.onCommute = x; }
-    public void setisHomeless(boolean x) { this.isHomeless = x; }
+    public void setToWork(boolean x)	{ this.ToWork = x; behaviorChanged(); }
+    public void setatWork(boolean x)	{ if (store != null) store.setFlag(slot, AgentStore.AT_WORK, x); else this.atWork = x; behaviorChanged(); }
+    public void setatHome(boolean x)	{ if (store != null) store.setFlag(slot, AgentStore.AT_HOME, x); else this.atHome = x; }
+    public void setonCommute(boolean x)	{ if (store != null) store.setFlag(slot, AgentStore.ON_COMMUTE, x); else this.onCommute = x; }
+    public void setisHomeless(boolean x) { this.isHomeless = x; behaviorChanged(); }
     public void set_tcommuteStart(int x)	{ this.tcommuteStart = x; }
     public void set_tcommuteEnd(int x)	{ this.tcommuteEnd = x; }
-    public void set_tcommuteTime(int x)	{ this.tcommuteTime = x; }
-    public void setcommuteDist(double x)	{ this.commutedist = x; }
+    public void set_tcommuteTime(int x)	{ if (store != null) store.commuteTime[slot] = x; else this.tcommuteTime = x; }
+    public void setcommuteDist(double x)	{ if (store != null) store.commuteDist[slot] = x; else this.commutedist = x; }
+    public void setDead(boolean x)		{ if (store != null) store.setFlag(slot, AgentStore.DEAD, x); else this.dead = x; behaviorChanged(); }
+    public void setDose(double x)		{ if (store != null) store.dose[slot] = x; else this.dose = x; }
+    public void setFleeing(boolean x)	{ if (store != null) store.setFlag(slot, AgentStore.FLEEING, x); else this.fleeing = x; }
+    public void setvStatus(int x)		{ if (store != null) store.vStatus[slot] = (byte) x; else this.vStatus = x; }
     public void sethholdnet(ArrayList<String> x)  { this.hholdnet = x; }
     public void setemergnet(ArrayList<String> x)	{this.emergnet = x; }
-    public void setinGroup(boolean x)	{ this.inGroup = x; }
+    public void setinGroup(boolean x)	{ if (store != null) store.setFlag(slot, AgentStore.IN_GROUP, x); else this.inGroup = x; behaviorChanged(); }
     public void setisLeader(boolean x)	{ this.isLeader = x; }
     public void setindvGrpID(String x)	{ this.indvGrpID = x; }
     public void setcarGrpID(String x)	{ this.carGrpID = x; }
 
     public String getTract()  			{ return this.tract; }
 	public String getCounty()			{ return this.county; }
-	public boolean getIsFirstResp()		{ return this.firstResp; }		// first responder flag
+	public boolean getIsFirstResp()		{ return (store != null) ? store.flag(slot, AgentStore.FIRST_RESP) : this.firstResp; }		// first responder flag
     public int getAge()    				{ return this.age; }
     public String getSex()    			{ return this.sex; }
     public boolean getStayAtHome()		{ return this.StayAtHome; }
@@ -165,22 +174,93 @@ public class Indv extends Agent{
     public Node getHomeNode()			{ return this.homeNode; }
     public Node getWorkNode()			{ return this.workNode; }
     public boolean getToWork()			{ return this.ToWork; }
-    public boolean getatWork()			{ return this.atWork; }  
-    public boolean getatHome()			{ return this.atHome; }
-    public boolean getonCommute()		{ return this.onCommute; }
+    public boolean getatWork()			{ return (store != null) ? store.flag(slot, AgentStore.AT_WORK) : this.atWork; }  
+    public boolean getatHome()			{ return (store != null) ? store.flag(slot, AgentStore.AT_HOME) : this.atHome; }
+    public boolean getonCommute()		{ return (store != null) ? store.flag(slot, AgentStore.ON_COMMUTE) : this.onCommute; }
     public boolean getisHomeless()		{ return this.isHomeless; }
     public int get_tcommuteStart()		{ return this.tcommuteStart; }
     public int get_tcommuteEnd()		{ return this.tcommuteEnd; }
-    public int get_tcommuteTime()		{ return this.tcommuteTime; }
-    public double getcommuteDist()		{ return this.commutedist; }
+    public int get_tcommuteTime()		{ return (store != null) ? store.commuteTime[slot] : this.tcommuteTime; }
+    public double getcommuteDist()		{ return (store != null) ? store.commuteDist[slot] : this.commutedist; }
+    public boolean getDead()			{ return (store != null) ? store.flag(slot, AgentStore.DEAD) : this.dead; }
+    public double getDose()				{ return (store != null) ? store.dose[slot] : this.dose; }
+    public boolean getFleeing()			{ return (store != null) ? store.flag(slot, AgentStore.FLEEING) : this.fleeing; }
+    public int getvStatus()				{ return (store != null) ? store.vStatus[slot] : this.vStatus; }
     public ArrayList<String> getHholdnet()  { return this.hholdnet; }
     public ArrayList<String> getEmergnet()  { return this.emergnet; } 
-    public boolean getinGroup()			{ return this.inGroup; }
+    public boolean getinGroup()			{ return (store != null) ? store.flag(slot, AgentStore.IN_GROUP) : this.inGroup; }
     public boolean getisLeader()		{ return this.isLeader; }
     public String getindvGrpID()		{ return this.indvGrpID; }
     public String getcarGrpID()			{ return this.carGrpID; }
-	
-    
+
+    /**
+     * Moves the stored values back to the agent's fields and detaches it from the store,
+     * for agents discarded while the population is built, see AgentStore.compact
+     */
+    void leaveStore() {
+    	if (store == null) {
+    		return;
+    	}
+    	this.healthStatus = store.health[slot];
+    	this.dose = store.dose[slot];
+    	this.dead = store.flag(slot, AgentStore.DEAD);
+    	this.firstResp = store.flag(slot, AgentStore.FIRST_RESP);
+    	this.atWork = store.flag(slot, AgentStore.AT_WORK);
+    	this.atHome = store.flag(slot, AgentStore.AT_HOME);
+    	this.onCommute = store.flag(slot, AgentStore.ON_COMMUTE);
+    	this.fleeing = store.flag(slot, AgentStore.FLEEING);
+    	this.inGroup = store.flag(slot, AgentStore.IN_GROUP);
+    	this.vStatus = store.vStatus[slot];
+    	this.commutedist = store.commuteDist[slot];
+    	this.tcommuteTime = store.commuteTime[slot];
+    	store = null;
+    }
+
+    @Override
+    public int getHealthStatus() {
+    	return (store != null) ? store.health[slot] : this.healthStatus;
+    }
+
+    /** health changes reorder or drop the agent in the victim registry and wake its groups */
+    @Override
+    public void setHealthStatus(int x) {
+    	if (store != null) {
+    		store.health[slot] = x;
+    		behaviorChanged();
+    	}
+    	else {
+    		super.setHealthStatus(x);
+    	}
+    	if (victims != null) {
+    		victims.update(this);
+    	}
+    	if (behaviors != null) {
+    		behaviors.wakeGroupsOf(this);
+    	}
+    }
+
+    /** a member's goal is followed by its groups, see BehaviorScheduler.wakeGroupsOf */
+    @Override
+    public void setGoal(String x) {
+    	super.setGoal(x);
+    	if (behaviors != null) {
+    		behaviors.wakeGroupsOf(this);
+    	}
+    }
+
+    /** moves the agent's victim registry entry along with it */
+    @Override
+    public void updatePosition(Coordinate c) {
+    	super.updatePosition(c);
+    	if (store != null) {
+    		store.moved(slot, c);
+    	}
+    	if (victims != null) {
+    		victims.update(this);
+    	}
+    }
+
+
     
 	//====================================
     /**
@@ -196,10 +276,14 @@ public class Indv extends Agent{
      * @param housenet
      */
 	//====================================
-	public Indv(World world, long seed, String census, String county, String ID, String age, String sex, String home, String work, String homeroad, String workroad, ArrayList<String> housenet) {
-		super(world, seed); // super constructor sets superclass initialization data
+	public Indv(World world, String census, String county, String ID, String age, String sex, String home, String work, String homeroad, String workroad, ArrayList<String> housenet) {
+		super(world); // super constructor sets superclass initialization data
 		
 		state = world;
+		if (world.agentStore != null) {  // the agent's state lives in its store column
+			store = world.agentStore;
+			slot = store.add(this);
+		}
 		
 		setID(ID);
 		setTract(census);
@@ -245,7 +329,6 @@ public class Indv extends Agent{
 			setEndNode(getWorkNode());
 			
 			// set the location to be displayed
-			GeometryFactory fact = new GeometryFactory();
 			setLocation(new MasonGeometry(fact.createPoint(new Coordinate(10, 10))));
 			Coordinate startCoord = null;
 			startCoord = getHomeNode().getCoordinate();
@@ -332,15 +415,15 @@ public void step(SimState world){
 	   state = (World) world;
 	   
 	   // Individuals continue routine, if they are alive and well 
-	   if ( !this.dead ) {  // if agents are alive and not blocked  // && (this.getHealthStatus() != 72)
+	   if ( !getDead() ) {  // if agents are alive and not blocked  // && (this.getHealthStatus() != 72)
 		   
 		   state = (World) world; // update perception of the world at each step
 		   long currentStep = state.schedule.getSteps();
 	   
 		   Coordinate beginCoord = currentCoord;
 		   
-		   // Health status is used as the first level trigger for behavior change post detonation
-		   if ((this.getHealthStatus() <= 1) || (this.getHealthStatus() == 80) || (this.getHealthStatus() == 89)) {  // 80 & 89 are temporary testing parameters for routing around the impact area
+		   // Health status is used as the first level trigger for behavior change post detonation, see findBehavior
+		   if (findBehavior().routine) {
 			   routine();
 		   
 			   // calculate the average commute distance and time at end of the first day
@@ -348,9 +431,15 @@ public void step(SimState world){
 				   double sum_commuteDist = 0;
 				   double sum_commuteTime = 0;
 				   int numAgents = Log.indvList.size() - 1;
-				   for (Indv a: Log.indvList) {
-					   sum_commuteDist += a.getcommuteDist();
-					   sum_commuteTime += a.get_tcommuteTime();
+				   if (state.agentStore != null) {
+					   sum_commuteDist = state.agentStore.sumCommuteDist();
+					   sum_commuteTime = state.agentStore.sumCommuteTime();
+				   }
+				   else {
+					   for (Indv a: Log.indvList) {
+						   sum_commuteDist += a.getcommuteDist();
+						   sum_commuteTime += a.get_tcommuteTime();
+					   }
 				   }
 				   Log.avg_dCommute = sum_commuteDist / numAgents;
 				   Log.avg_tCommute = sum_commuteTime / numAgents;
@@ -358,7 +447,7 @@ public void step(SimState world){
 		   }
 
 		   // Individuals are impacted by event, and move into nonroutine behavior
-		   else if (this.getHealthStatus() > 1) {
+		   else {
 			   nonroutine(currentStep, state);
 		   }
 		
@@ -368,6 +457,48 @@ public void step(SimState world){
 	   
    }
 
+
+   /**
+    * Behavior state of the agent
+    * Health status decides between the routine and the response to the event: health up to 1 is
+    * unaffected, 80 & 89 are temporary testing codes for agents routing around the impact area.
+    * Routine agents need work each step only while on their commute; affected agents while they
+    * respond, until they are sheltering.
+    * @return the state
+    */
+   @Override
+   Behavior findBehavior() {
+	   if (getDead()) {
+		   return Behavior.DEAD;
+	   }
+	   int health = getHealthStatus();
+	   if ((health <= 1) || (health == 80) || (health == 89)) {
+		   if (getStayAtHome() || getisHomeless()) {
+			   return Behavior.STAYING_HOME;
+		   }
+		   if (getinGroup()) {
+			   return Behavior.IN_GROUP;
+		   }
+		   if ( (getToWork() && !getatWork()) || (!getToWork() && getatWork()) ) {
+			   return Behavior.COMMUTING;
+		   }
+		   return Behavior.PARKED;
+	   }
+	   if (getIsFirstResp()) {
+		   return Behavior.AIDING;
+	   }
+	   if (getGoal() == "shelter") {
+		   return Behavior.SHELTERING;
+	   }
+	   if (getGoal() == "flee") {
+		   return Behavior.FLEEING;
+	   }
+	   if (getGoal() == "findshelter") {
+		   return Behavior.FINDING_SHELTER;
+	   }
+	   return Behavior.REACTING;
+   }
+
    
    
 	//======================================
@@ -396,7 +527,7 @@ public void step(SimState world){
 			   setatHome(false);
 			   setonCommute(true);
 		   
-			   if (!this.inGroup) { // only count this if the agent is not in a group
+			   if (!getinGroup()) { // only count this if the agent is not in a group
 				   Log.atHomeCount -= 1;
 				   Log.onCommuteCount += 1;
 			   }
@@ -405,13 +536,13 @@ public void step(SimState world){
 			   setToWork(false);
 			   setonCommute(true);
 		   
-			   if (!this.inGroup) { // only count this if the agent is not in a group
+			   if (!getinGroup()) { // only count this if the agent is not in a group
 				   Log.atWorkCount -= 1;
 				   Log.onCommuteCount += 1;
 			   }
 		   }
 	   
-		   if (!this.inGroup) {  // boolean to check whether that individual travels as part of a group, i.e. carpools
+		   if (!getinGroup()) {  // boolean to check whether that individual travels as part of a group, i.e. carpools
 			   // individuals in group commute with their group
 			   // if it is time to commute, but agent has not arrived at work, travel commute path
 			   if ( getToWork() && !getatWork() ) {
@@ -469,9 +600,9 @@ public void step(SimState world){
    void commute()	{
 	   // get traffic data and check that edges are passable
        long currentStep = this.state.schedule.getSteps();
-	   double edgeTrafficsize = this.state.edgeTraffic.get(currentEdge).size();
-	   double edgeDistance = this.state.edgesToDistance.get(currentEdge);
-	   double speedLimit = this.state.edgesToSpeedLimit.get(currentEdge);
+	   double edgeTrafficsize = this.state.edgeTraffic.get(currentEdge);
+	   double edgeDistance = this.state.edgeAttributes.km(currentEdge);
+	   double speedLimit = this.state.edgeAttributes.speedLimit(currentEdge);
 	   double moveRate = speedLimit / 60;  // (n kilometers / 60 steps) to get km/step
 	   
 	   // if agent gets stuck because edge is impassable at time of impact
@@ -525,15 +656,15 @@ public void step(SimState world){
        // check to see if the progress has taken the current index beyond its goal
        // given the direction of movement. If so, proceed to the next edge
        if (linkDirection == 1 && currentIndex > endIndex) {
-           currentCoord = getSegment().extractPoint(endIndex);
+           currentCoord = moveOwnCoord(endIndex);
            transitionToNextEdge(edgeTrafficsize, edgeDistance, currentIndex - endIndex);
 
        } else if (linkDirection == -1 && currentIndex < startIndex) {
-           currentCoord = getSegment().extractPoint(startIndex);
+           currentCoord = moveOwnCoord(startIndex);
            transitionToNextEdge(edgeTrafficsize, edgeDistance, startIndex - currentIndex);
        } else { 
     	   // just update the position!
-           currentCoord = getSegment().extractPoint(currentIndex);
+           currentCoord = moveOwnCoord(currentIndex);
        }
        updatePosition(currentCoord);
        
@@ -565,13 +696,11 @@ public void step(SimState world){
 
 	   reachedDestination = true; // agent ends trip at the current point in order to reroute
 	   
-	   // initial distance for search of a new node
-	   double searchDist = 0.01; // start searching at for a distance in degrees for 1km
 	   // set the movementRate for movement towards the start node of the detour
 	   setMoveRateKmPerStep(10.0/60.0);  // movement rate for one step estimated to slow to 10km/hour in cars -- 10/60 steps
 	   
 	   // set the detour path startNode to the nearestNode
-	   setStartNode(findNearestNode(this.getGeometry(), world.roadIntersections, world.roadNetwork, searchDist));
+	   setStartNode(findNearestNode(this.getGeometry()));
 	   
 	   // check whether any location destination nodes were destroyed by impact -- set to new defaults
 	   // agents evaluate if they still have work or home location to return to 
@@ -583,11 +712,11 @@ public void step(SimState world){
 		   
 		   int count = 0;
 		   double awayfromgroundzero = .005; // .01 in degrees
-		   Node tempnode = findTempLocationNode(world.roadIntersections, world.roadNetwork);
+		   Node tempnode = findTempLocationNode(world.nodeIndex);
 		   while (tempnode == null) {
 			   // look further away from ground zero for a startNode
-			   setStartNode(findsafeNearestNode(this.getGeometry(), world.roadIntersections, world.roadNetwork, world.waterField, searchDist));
-			   tempnode = findTempLocationNode(world.roadIntersections, world.roadNetwork);
+			   setStartNode(findsafeNearestNode(this.getGeometry(), world.waterMask));
+			   tempnode = findTempLocationNode(world.nodeIndex);
 			   count += 1;
 			   
 			   // only try to reset the start node using findsafeNearestNode() twice
@@ -597,8 +726,7 @@ public void step(SimState world){
 				   double clong = this.getGeometry().geometry.getCoordinate().x;
 				   double newlat = clat + awayfromgroundzero;
 				   double newlong = clong + awayfromgroundzero;
-			   	   Coordinate tempCoord = new Coordinate(newlong, newlat);
-				   currentCoord = tempCoord;
+				   currentCoord = moveOwnCoord(newlong, newlat);
 				   updatePosition(currentCoord);
 				   
 				   return;
@@ -618,7 +746,7 @@ public void step(SimState world){
 	   // check if there is an available currentPath based on the remaining edges or new Node destinations
 	   // if agent is headed to work
 	   if ( getToWork() && !getatWork() ) {
-		   currentPath = findNewAStarPath(getStartNode(), getWorkNode());
+		   currentPath = findRepairedPath(getStartNode(), getWorkNode());
 		   if (currentPath != null) {
 			   setneedReroute(false);
 			   sethaveDetour(true);
@@ -638,15 +766,17 @@ public void step(SimState world){
 			   
 			   // if there is also no path home -- find temp location
 			   else {
+				   if (takeEvacuationRoute()) {
+					   return; // leaves the damage area by the evacuation table route
+				   }
 				   int count = 0;
 				   double awayfromgroundzero = .005; // .01 in degrees
 				   // while no path is found to a random temporary node, reset the random startnode and try again
-				   searchDist = .02;
-				   Node tempnode = findTempLocationNode(world.roadIntersections, world.roadNetwork);
+				   Node tempnode = findTempLocationNode(world.nodeIndex);
 				   while (tempnode == null) {
 					   // look further away from ground zero for a startNode
-					   setStartNode(findsafeNearestNode(this.getGeometry(), world.roadIntersections, world.roadNetwork, world.waterField, searchDist));
-					   tempnode = findTempLocationNode(world.roadIntersections, world.roadNetwork);
+					   setStartNode(findsafeNearestNode(this.getGeometry(), world.waterMask));
+					   tempnode = findTempLocationNode(world.nodeIndex);
 					   count += 1;
 					   //System.out.println("Indv>reroute>try to find new templocation count: " + count);
 					   // only try to reset the start node using findsafeNearestNode() twice
@@ -656,8 +786,7 @@ public void step(SimState world){
 						   double clong = this.getGeometry().geometry.getCoordinate().x;
 						   double newlat = clat + awayfromgroundzero;
 						   double newlong = clong + awayfromgroundzero;
-					   	   Coordinate tempCoord = new Coordinate(newlong, newlat);
-						   currentCoord = tempCoord;
+						   currentCoord = moveOwnCoord(newlong, newlat);
 						   updatePosition(currentCoord);
 
 						   return;
@@ -677,7 +806,7 @@ public void step(SimState world){
 	   }
 	   // if the agent is headed home
 	   else if ( !getToWork() && getatWork() ) {
-		   currentPath = findNewAStarPath(getStartNode(), getHomeNode());
+		   currentPath = findRepairedPath(getStartNode(), getHomeNode());
 		   if (currentPath != null) {
 			   setneedReroute(false);
 			   sethaveDetour(true);
@@ -685,14 +814,16 @@ public void step(SimState world){
 		   else {
 			   Log.IDPhome += 1;  // track internally displace people with no homes
 			   setisHomeless(true);
+			   if (takeEvacuationRoute()) {
+				   return; // leaves the damage area by the evacuation table route
+			   }
 			   int count = 0;
 			   double awayfromgroundzero = .005; // .01 in degrees
-			   Node tempnode = findTempLocationNode(world.roadIntersections, world.roadNetwork);
-			   searchDist = .02;
+			   Node tempnode = findTempLocationNode(world.nodeIndex);
 			   while (tempnode == null) {
 				   // look further away from ground zero for a startNode
-				   setStartNode(findsafeNearestNode(this.getGeometry(), world.roadIntersections, world.roadNetwork, world.waterField, searchDist));
-				   tempnode = findTempLocationNode(world.roadIntersections, world.roadNetwork);
+				   setStartNode(findsafeNearestNode(this.getGeometry(), world.waterMask));
+				   tempnode = findTempLocationNode(world.nodeIndex);
 				   count += 1;
 
 				   // only try to reset the start node using findsafeNearestNode() twice
@@ -702,8 +833,7 @@ public void step(SimState world){
 					   double clong = this.getGeometry().geometry.getCoordinate().x;
 					   double newlat = clat + awayfromgroundzero;
 					   double newlong = clong + awayfromgroundzero;
-				   	   Coordinate tempCoord = new Coordinate(newlong, newlat);
-					   currentCoord = tempCoord;
+					   currentCoord = moveOwnCoord(newlong, newlat);
 					   updatePosition(currentCoord);
 
 					   return;
@@ -726,6 +856,27 @@ public void step(SimState world){
  }
   
   
+  /**
+   * Sends the agent along the evacuation table route from its start node to the closest
+   * exit outside the damage area; the exit becomes its temporary home
+   * @return true if the agent has an evacuation route
+   */
+  boolean takeEvacuationRoute() {
+	  List<GeomPlanarGraphDirectedEdge> evacPath = findEvacuationPath(getStartNode());
+	  if (evacPath == null) {
+		  return false;
+	  }
+	  currentPath = evacPath;
+	  setHomeNode(evacPath.get(evacPath.size()-1).getToNode());  // agents shelter at the exit node
+	  setWorkNode(getHomeNode());
+	  setEndNode(getHomeNode());
+	  setGoalPoint(getHomeNode().getCoordinate()); // reset goal coordinate
+	  setneedReroute(false);
+	  sethaveDetour(true);
+	  return true;
+  }
+  
+  
   public void goToDetour() {
 	  Coordinate startCoord = getStartNode().getCoordinate();
 	  
@@ -819,7 +970,7 @@ public void step(SimState world){
 			       GeomPlanarGraphEdge edge =
 			            (GeomPlanarGraphEdge) currentPath.get(indexOnPath).getEdge();
 			        setupEdge(edge);
-			        updatePosition(segment.extractPoint(currentIndex));
+			        updatePosition(extractPoint(currentIndex));
 		       }
 		       // make sure flip path settings are correct
 		       reachedDestination = false;
@@ -923,7 +1074,7 @@ public void step(SimState world){
 		  // checks for grouping behavior -- instinctual response that occurs in all zones
 		  //if ( Parameters.Grouping ) {  // Simulation run allows grouping behavior
 		  if ( Parameters.Emergent ) {  // Simulation run allows grouping behavior
-			  if (!inGroup) { // if you're not in a group, i.e. carpool
+			  if (!getinGroup()) { // if you're not in a group, i.e. carpool
 				  // can eventually add whether it has the goal of joining a group
 				  
 				  // try to join a group -- agents try to join group every step of routine
@@ -1059,7 +1210,7 @@ public void step(SimState world){
 	   double dgoal		= Math.sqrt(dLat*dLat + dLong*dLong);	// rough lat/long distance from current location to goal
 	   double dgzLat	= Parameters.tLat - cLat;
 	   double dgzLong	= Parameters.tLong - cLong;
-	   double dist 		= getLocation().geometry.distance(Parameters.groundZero);    
+	   double dist 		= distanceTo(Parameters.groundZero.getCoordinate());
 	   distFromGroundZero	 		= Math.sqrt(dgzLat*dgzLat + dgzLong*dgzLong); // dist from ground zero
 	   
 	   if (distFromGroundZero > Parameters.maxDistGZ) 
@@ -1110,16 +1261,12 @@ public void step(SimState world){
 					Effects.createFleeingGoalCord(this, world);						
 					
 					// test new fleeing goal point to see whether it is in the water
-					Coordinate savedCoord = currentCoord;
-					updatePosition(getGoalPoint());
-					Bag waterobjs = world.waterField.getCoveringObjects(getGeometry());
-					if (!waterobjs.isEmpty()) {
-						Coordinate newCoord = setAltGoalPt(world.waterField, getGoalPoint(), speedrate);
+					if (world.waterMask.isWater(getGoalPoint())) {
+						Coordinate newCoord = setAltGoalPt(world.waterMask, getGoalPoint(), speedrate);
 						setGoalPoint(newCoord);
 					}
-					updatePosition(savedCoord);
 					
-//					Coordinate fleeingCoord = findAltCoord(world.waterField, currentCoord, speedrate*3);
+//					Coordinate fleeingCoord = findAltCoord(world.waterMask, currentCoord, speedrate*3);
 //					setGoalPoint(fleeingCoord);
 				}
 				else	// transfer to road system and look for shelter
@@ -1141,8 +1288,8 @@ public void step(SimState world){
 				else // evaluate movement on foot
 				{
 					// try out the new coordinate position
-					Coordinate fleeingCoord = new Coordinate(newLong, newLat);
-					//System.out.println("Indv->step->nonroutine->getAway->inside z3 to " + fleeingCoord + " " + dist);
+					Coordinate fleeingCoord;
+					//System.out.println("Indv->step->nonroutine->getAway->inside z3 to " + newLong + " " + newLat + " " + dist);
 					// if the new coordinate is not past the goal coodinate
 					// move step at the movement rate otherwise move all the way to the goal
 					if (Math.abs(speedLat) < Math.abs(dLat) || Math.abs(speedLong) < Math.abs(dLong))  // take a step toward goal  
@@ -1151,7 +1298,7 @@ public void step(SimState world){
 //						if (getHealthStatus() == 72)	// agent has already hit the water
 //						{
 //							System.out.println("Agent->react-> agent moving along water " + getID());
-//							fleeingCoord = findAltCoord(world.waterField, fleeingCoord, speedrate);
+//							fleeingCoord = findAltCoord(world.waterMask, fleeingCoord, speedrate);
 //							newLong = fleeingCoord.x;
 //							newLat = fleeingCoord.y;
 //							// set goalPoint (fleeing goal) to current point
@@ -1160,16 +1307,16 @@ public void step(SimState world){
 						//{
 							// get all the water objects at this position
 							
-							Bag polity = world.waterField.getCoveringObjects(this.getGeometry());
+							boolean inWater = world.waterMask.isWater(getGeometry().geometry.getCoordinate());
 							//System.out.println("Agent->react-> bag= " + polity);
 							// if the water polity is not empty (i.e. there is water at prospective position), stay at the current position
-							if (! polity.isEmpty() || getHealthStatus() == 72) // not in the water
+							if (inWater || getHealthStatus() == 72) // not in the water
 							{
 								//System.out.println("Agent>getAway> agent almost in water " + getID());
 								// reset fleeing coordinate
-								//fleeingCoord = findTempLocationNode(world.roadIntersections, world.roadNetwork).getCoordinate();
-								fleeingCoord = findAltCoord(world.waterField, currentCoord, speedrate);
-								setGoalPoint(setAltGoalPt(world.waterField, fleeingCoord, speedrate));
+								//fleeingCoord = findTempLocationNode(world.nodeIndex).getCoordinate();
+								fleeingCoord = findAltCoord(world.waterMask, currentCoord, speedrate);
+								setGoalPoint(setAltGoalPt(world.waterMask, fleeingCoord, speedrate));
 								currentCoord = fleeingCoord;
 								updatePosition(fleeingCoord);
 //								newLong = fleeingCoord.x;
@@ -1187,19 +1334,15 @@ public void step(SimState world){
 		//				// ready to move to newLat/newLong
 							else {	
 								// move step toward goal
-								fleeingCoord = new Coordinate(newLong, newLat);
-								// MasonGeometry fleeingStep = new MasonGeometry(fact.createPoint(fleeingCoord));
-								currentCoord = new Coordinate(newLong,newLat);
-								// currentLocation = new MasonGeometry(fact.createPoint(currentCoord)); //10,10)));
-								updatePosition(fleeingCoord);
+								currentCoord = moveOwnCoord(newLong, newLat);
+								updatePosition(currentCoord);
 				//				System.out.println("Agent>react>moving step toward fleeing goal dz= " + dz + " fleeing rate= " + fleeingRate);
 							}
 						//}
 					}
 					else  // move all the way to the goal in one step
 					{
-						fleeingCoord = new Coordinate(gLong, gLat);
-						updatePosition(fleeingCoord);
+						updatePosition(getGoalPoint());
 						//System.out.println("Agent>react>moving step to fleeing goal " + fleeingCoord);
 					}
 				}// eval on foot					
@@ -1226,8 +1369,6 @@ public void step(SimState world){
 	  // convert meter foot rate to the model's kilometers standard unit
 	  double speedrate = Spacetime.degToKilometers(getMoveRateKmPerStep());
 	  
-	  // initial distance for search of a new node
-	  double searchDist = 0.02; // start searching at for a distance in degrees for 1km
 	  // do we want to update the movementRate?
 	  //System.out.println("Indv>nonroutine>routeHome>moveRate: " + speedrate);
 	  
@@ -1238,13 +1379,13 @@ public void step(SimState world){
 	  // get only roadIntersections that are not across water
 	  //world.roadIntersections.
 	  
-	  Node startNode = findsafeNearestNode(this.getGeometry(), state.roadIntersections, state.roadNetwork, state.waterField, searchDist);
+	  Node startNode = findsafeNearestNode(this.getGeometry(), state.waterMask);
 	  if (startNode == null) {
 		  //System.out.println("Indv>nonroutine>routeHome>no startNodes here, flee further");
 		  return;
 	  }
 	  else setStartNode(startNode);
-	  //setStartNode(findTempLocationNode(world.roadIntersections, world.roadNetwork)); // maybe rewrite this for the start node -- a little closer
+	  //setStartNode(findTempLocationNode(world.nodeIndex)); // maybe rewrite this for the start node -- a little closer
 	  setGoalPoint(getStartNode().getCoordinate()); // reset goal coordinate
 	  //System.out.println("Indv>nonroutine>routeHome>current location: " + currentCoord + " distance " + currentCoord.distance(getStartNode().getCoordinate()));
 	  //System.out.println("Indv>nonroutine>routeHome>startNode " + getStartNode() + " " + getStartNode().getCoordinate());
@@ -1254,7 +1395,7 @@ public void step(SimState world){
 	  if ( getHomeNode() == null || getHomeNode().getCoordinate() == null) {
 		  Log.IDPhome += 1;  // track internally displace people with no homes
 		  setisHomeless(true);
-		  Node tempNode = findTempLocationNode(state.roadIntersections, state.roadNetwork);
+		  Node tempNode = findTempLocationNode(state.nodeIndex);
 		  setHomeNode(tempNode);
 		  setEndNode(tempNode);
 		  setGoalPoint(getHomeNode().getCoordinate()); // reset goal coordinate
@@ -1274,15 +1415,17 @@ public void step(SimState world){
 	  }
 	  else {
 		   //System.out.println("Indv>nonroutine>routeHome>no path to homeNode");
+		   if (takeEvacuationRoute()) {
+			   return; // leaves the damage area by the evacuation table route
+		   }
 		   int count = 0;
 		   double movedist = .0005; // .01 in degrees
 		// while no path is found to a random temporary node, reset the random startnode and try again
-		   searchDist = .02;
-		   Node tempnode = findTempLocationNode(state.roadIntersections, state.roadNetwork);
+		   Node tempnode = findTempLocationNode(state.nodeIndex);
 		   while (tempnode == null) {
 			   // look further away from ground zero for a startNode
-			   setStartNode(findsafeNearestNode(this.getGeometry(), state.roadIntersections, state.roadNetwork, state.waterField, searchDist));
-			   tempnode = findTempLocationNode(state.roadIntersections, state.roadNetwork);
+			   setStartNode(findsafeNearestNode(this.getGeometry(), state.waterMask));
+			   tempnode = findTempLocationNode(state.nodeIndex);
 			   count += 1;
 			   //System.out.println("Indv>nonroutine>routeHome>try to find new start: " + count);
 			   // only try to reset the start node using findsafeNearestNode() once more
@@ -1296,8 +1439,7 @@ public void step(SimState world){
 				   double newlat = clat + movelat;
 				   double newlong = clong + movelong;
 				   //System.out.println("Indv>reroute>move: " + movelat + " " + movelong);
-			   	   Coordinate tempCoord = new Coordinate(newlong, newlat);
-				   currentCoord = tempCoord;
+				   currentCoord = moveOwnCoord(newlong, newlat);
 				   updatePosition(currentCoord);
 				   //System.out.println("Indv>reroute>move away at: " + count + " new coord " + currentCoord);
 				   return;
@@ -1325,7 +1467,7 @@ public void step(SimState world){
 	  //System.out.println("Indv>step>nonroutine>detour>endNode " + getHomeNode().getCoordinate());
 	  
 //	  if (getEndNode().getCoordinate() == null) {
-//		  Node tempNode = findTempLocationNode(world.roadIntersections, world.roadNetwork);
+//		  Node tempNode = findTempLocationNode(world.nodeIndex);
 //		  setHomeNode(tempNode);
 //		  setEndNode(tempNode);
 //		  currentPath = findNewAStarPath(getStartNode(), getHomeNode());
@@ -1368,78 +1510,19 @@ public void step(SimState world){
   }
   
   
-  public Node findsafeNearestNode(MasonGeometry point, GeomVectorField nodefield, GeomPlanarGraph roadNet, GeomVectorField blockedfield, double startDistance) {
-	   Bag candidates = nodefield.getGeometries(); //world.roadIntersections.getGeometries();
-	   double dist = startDistance;
-	   int count = 0;
-	   int loopcount = 0;
-	   while (true) {
-		   loopcount += 1;
-		   // simply increase or decrease distance to find an appropriate number of candidates
-		   candidates = nodefield.getObjectsWithinDistance(point, dist);  //world.roadIntersections.getObjectsWithinDistance(point, dist);
-		   // remove any points that are within Zone 3 + .01 degrees
-		   for (Object o: candidates) {
-			   MasonGeometry geo = (MasonGeometry) o;
-			   if (geo.geometry.distance(Parameters.groundZero) <= (Parameters.z3radius+.01)) {
-				   candidates.remove(o);
-				   count += 1;
-			   }
-		   }
-		   //System.out.println("Indv>findsafeNearestNode>removed candidates: " + count);
-		   count = 0; // reset removed candidate count
-		   if (loopcount == 20) {
-			   // agent couldn't find a candidate node, flee further out with a randomCoord move
-			   setGoal("flee");
-			   setneedReroute(false);
-			   Coordinate newCoord = findRandCoord(blockedfield, this.currentCoord, this.getMoveRateKmPerStep());
-			   this.updatePosition(newCoord);
-			   return null;
-		   }
-		   //System.out.println("Indv>findsafeNearestNode>while loopcount: " + loopcount);
-		   if (candidates.size() == 0) {
-			   dist *= 10;
-		   }
-		   else if (candidates.size() > 3) {
-			   dist *= 0.5;			   
-		   }
-		   else { break; }	   
-	   }
-	   
-	   double minDist = Double.MAX_VALUE;
-	   MasonGeometry nearest = null;
-	   // refinement step: now it's time to find the nearest among candidates
-	   for (Object ele : candidates) {
-		   MasonGeometry geo = (MasonGeometry) ele;
-		   double tmp = geo.geometry.distance(point.geometry);
-		   if (minDist > tmp) {
-			   nearest = geo;
-			   minDist = tmp;
-		   }
+  public Node findsafeNearestNode(MasonGeometry point, WaterMask water) {
+	   // nearest node outside Zone 3 + .01 degrees
+	   Coordinate c = point.geometry.getCoordinate();
+	   Node nearestNode = state.nodeIndex.nearest(c.x, c.y, NodeIndex.outside(Parameters.groundZero, Parameters.z3radius + .01));
+	   if (nearestNode == null) {
+		   // agent couldn't find a candidate node, flee further out with a randomCoord move
+		   setGoal("flee");
+		   setneedReroute(false);
+		   Coordinate newCoord = findRandCoord(water, this.currentCoord, this.getMoveRateKmPerStep());
+		   this.updatePosition(newCoord);
+		   return null;
 	   }
-	   //System.out.println("Indv>findsafeNearestNode>nearest: " + nearest);
-	   
-	   Bag nearestNodes = nodefield.getCoveredObjects(nearest); 
-	   //System.out.println("Indv>findsafeNearestNode>nearest Nodes: " + nearestNodes);
-	   //System.out.println("Indv>findsafeNearestNode>number of nodes at this point: " + nearestNodes.size());
-	   MasonGeometry nearestObj = (MasonGeometry) nearestNodes.get(0);
-	   Coordinate nearestNodeCoord = nearestObj.geometry.getCoordinate();
-	   //System.out.println("Agent>findNearestNode>node coordinate " + nearestNode.getCoordinate());
-	   
-	   // Now grab the node in the network at the nearest geometry in the node field.
-	   Node nearestNode = null; 
-	   
-      Iterator<?> nodeIterator = roadNet.nodeIterator();
-      
-      while (nodeIterator.hasNext()) {
-      	// Create a GeometryVectorField of points representing road intersections
-          Node node = (Node) nodeIterator.next();
-          Coordinate coord = node.getCoordinate();
-          if (nearestNodeCoord == coord) {
-       	   nearestNode = node;
-          }
-      }
-      //System.out.println("Indv>findsafeNearestNode>nearest node " + nearestNode + " " + nearestNode.getCoordinate());
-      return nearestNode;
+	   return nearestNode;
   }
   
   
@@ -1447,14 +1530,13 @@ public void step(SimState world){
    * Finds a temporary Node location 1km near the agent
    * removes nodes too close to ground zero
    * checks for good path
-   * @param nodeField
-   * @param roadNet
+   * @param nodes node index of the current road network
    * @return
    */
-  Node findTempLocationNode(GeomVectorField nodeField, GeomPlanarGraph roadNet) {
+  Node findTempLocationNode(NodeIndex nodes) {
 	  // temporary method to put agents at a random location node near its current coordinate
 	  //System.out.println("Indv>reroute>findTempLocationNode>");
-	  ArrayList<GeomPlanarGraphDirectedEdge> testpath = null;
+	  List<GeomPlanarGraphDirectedEdge> testpath = null;
 	  int randomNum = 0;
 	  Node randomNode = null; 
 	  int count = 0;
@@ -1462,17 +1544,19 @@ public void step(SimState world){
 	  // look for location 1km away from stuck location --- in some cases less than this produced not enough node locations
 	  double dist = .01;  // 1km -- ~.01 degrees
 	  // find nodes in the modified roadNetwork within distance
-	  Bag nearestNodes = nodeField.getObjectsWithinDistance(this.getGeometry(), dist);
+	  Coordinate here = this.getGeometry().geometry.getCoordinate();
 	  //System.out.println("Indv>reroute>findTempLocation>nearestNodes: " + nearestNodes.size());
 	  
 	  // remove nodes too close to groundzero (inside z3radius), too close to the agent (within min distance of .0001, with null coordinates),
 	  // or if has to pass close to ground zero to get there or 
 	  // if the proposed node distance to ground zero is closer to ground zero than the current location, remove it from the list of candidates
-	  for (Object o: nearestNodes) {
-		  MasonGeometry geo = (MasonGeometry) o;
-		  if (geo.geometry.distance(this.getGeometry().geometry) < .0001 || geo.geometry.distance(Parameters.groundZero) <= (Parameters.z3radius + .01)
-				  || geo.geometry.getCoordinate() == null || geo.geometry.distance(Parameters.groundZero) <= this.getGeometry().geometry.distance(Parameters.groundZero)) {
-			  nearestNodes.remove(o);
+	  double hereToGroundZero = here.distance(Parameters.groundZero.getCoordinate());
+	  Bag nearestNodes = new Bag();
+	  for (Object o: nodes.within(here.x, here.y, dist)) {
+		  Coordinate c = ((Node) o).getCoordinate();
+		  double toGroundZero = c.distance(Parameters.groundZero.getCoordinate());
+		  if (c.distance(here) >= .0001 && toGroundZero > (Parameters.z3radius + .01) && toGroundZero > hereToGroundZero) {
+			  nearestNodes.add(o);
 		  }
 	  }
 	  
@@ -1485,21 +1569,12 @@ public void step(SimState world){
 		  }
 		  //System.out.println("Indv>reroute>findTempLocationNode>grabbed node locations: " + numNodes);
 	  
-		  // pick a random node MasonGeometry by its Index
+		  // pick a random node by its Index
 		  randomNum = new Random().nextInt(numNodes);
 		  //System.out.println("Indv>reroute>findTempLocationNode>random: " + randomNum);
-		  MasonGeometry randomgeo = (MasonGeometry) nearestNodes.get(randomNum);	  
 	  
-		  // Use nodeIterator to find and assign the Node in RoadNetwork that is at the random MasonGeometry	   
-		  Iterator<?> nodeIterator = roadNet.nodeIterator();
-       
-		  while (randomNode == null) {
-			  //System.out.println("Indv>reroute>findTempLocationNode>while count: " + count);
-			  Node node = (Node) nodeIterator.next();
-			  if (node.getCoordinate().equals2D(randomgeo.geometry.getCoordinate())) {
-				  randomNode = node;
-			  }
-			  
+		  if (randomNode == null) {
+			  randomNode = (Node) nearestNodes.get(randomNum);
 		  }
 
 		  testpath = findNewAStarPath(getStartNode(), randomNode);
@@ -1543,152 +1618,67 @@ public void step(SimState world){
 //  }
   
   
-public Coordinate findRandCoord(GeomVectorField water, Coordinate Coord, double speed) {
-	  //System.out.println("Indv>nonroutine>getAway>findAltCoord>" + getID() + " blocked by water, fleeing " + Coord);
-	  // create 4 test coordinates
+public Coordinate findRandCoord(WaterMask water, Coordinate Coord, double speed) {
+	  // create four direction probabilities; a direction into the water is never taken
+	  // the test positions are checked as x/y values, so only the chosen one becomes a Coordinate
 	  double move = speed;
-	  Coordinate testPosX = new Coordinate((Coord.x+move),Coord.y);
-	  Coordinate testNegX = new Coordinate((Coord.x-move),Coord.y);
-	  Coordinate testPosY = new Coordinate(Coord.x, (Coord.y+move));
-	  Coordinate testNegY = new Coordinate(Coord.x, (Coord.y-move));
+	  double east = water.isWater(Coord.x+move, Coord.y) ? 0.0 : 0.5;
+	  double west = water.isWater(Coord.x-move, Coord.y) ? 0.0 : 0.5;
+	  double north = water.isWater(Coord.x, Coord.y+move) ? 0.0 : 0.5;
+	  double south = water.isWater(Coord.x, Coord.y-move) ? 0.0 : 0.5;
 	  
-	  //System.out.println("testcoords: " + testPosX + " " + testNegX + " " + testPosY + " " + testNegY);
-	  
-	  MasonGeometry testPosLat = new MasonGeometry(fact.createPoint(testPosX));
-	  MasonGeometry testNegLat = new MasonGeometry(fact.createPoint(testNegX));
-	  MasonGeometry testPosLong = new MasonGeometry(fact.createPoint(testPosY));
-	  MasonGeometry testNegLong = new MasonGeometry(fact.createPoint(testNegY));
-	  
-	  // create four direction probabilities
-	  double north = 1;
-	  double south = 1;
-	  double east = 1;
-	  double west = 1;
-	  
-	  Bag candidateCoords = new Bag();
-	  Coordinate alternativeCoord = new Coordinate();
-	  
-	  // Add coordinates not on water to a Bag of candidates for testing 
-	  // Set the direction probabilities based on whether it is in the water
-	  // test PosX
+	  if (east + west + north + south == 0) {
+		  // no candidates, stay in place
+		  return Coord;
+	  }
 	  
-	  updatePosition(testPosX);
-	  Bag waterobjects1 = water.getCoveringObjects(this.getGeometry());
-	  //Bag waterobjects1 = water.getCoveringObjects(testPosLat.getGeometry());
-	  if ( waterobjects1.isEmpty() ) {
-		  candidateCoords.add(testPosX);
-		  east = 0.5;
-	  }	  
-	  else east = 0.0;	  
-	  // test NegX
-	  updatePosition(testNegX);
-	  Bag waterobjects2 = water.getCoveringObjects(this.getGeometry());
-	  //Bag waterobjects2 = water.getCoveringObjects(testNegLat.getGeometry());
-	  if ( waterobjects2.isEmpty() ) {
-		  candidateCoords.add(testNegX);
-		  west = 0.5;
-	  }	  
-	  else west = 0.0;
-	  // test PosY
-	  updatePosition(testPosY);
-	  Bag waterobjects3 = water.getCoveringObjects(this.getGeometry());
-	  //Bag waterobjects3 = water.getCoveringObjects(testPosLong.getGeometry());
-	  if ( waterobjects3.isEmpty() ) {
-		  candidateCoords.add(testPosY);
-		  north = 0.5;
+	  // test each candidate direction, east, west, north then south, for the distance farthest from ground zero
+	  // assign max dist from ground zero a higher probability
+	  Coordinate gz = Parameters.groundZero.getCoordinate();
+	  double maxDist = 0;
+	  double tempDist;
+	  if (east > 0 && (tempDist = distance(Coord.x+move, Coord.y, gz)) > maxDist) {
+		  maxDist = tempDist;
+		  east = 0.7;
 	  }
-	  else north = 0.0;
-	  // test NegY
-	  updatePosition(testNegY);
-	  Bag waterobjects4 = water.getCoveringObjects(this.getGeometry());
-	  //Bag waterobjects4 = water.getCoveringObjects(testNegLong.getGeometry());
-	  if ( waterobjects4.isEmpty() ) {
-		  candidateCoords.add(testNegY);
-		  south = 0.5;
+	  if (west > 0 && (tempDist = distance(Coord.x-move, Coord.y, gz)) > maxDist) {
+		  maxDist = tempDist;
+		  west = 0.7;
 	  }
-	  else south = 0.0;
-	  
-	  if (candidateCoords.size() == 0) {
-		  //System.out.println("Indv>nonroutine>getAway>findAltCoord>no candidates, stay in place");
-		  alternativeCoord = Coord;
+	  if (north > 0 && (tempDist = distance(Coord.x, Coord.y+move, gz)) > maxDist) {
+		  maxDist = tempDist;
+		  north = 0.7;
 	  }
-	  else {  
-		  Coordinate tempCoord = null;
-		  // remove any candidates that agent has already visited
-//		  for (Object o: candidateCoords) {
-//			  tempCoord = (Coordinate) o;
-//			  if (tempCoord.equals2D(lastCoord1) || tempCoord.equals2D(lastCoord2)) {
-//				  System.out.println("Indv>nonroutine>getAway>findAltCoord> " + lastCoord1 + " " + lastCoord2);
-//				  candidateCoords.remove(o);
-//			  }
-//		  }
-		  
-		  //System.out.println("Indv>nonroutine>getAway>findAltCoord>candidates: ");
-		  
-		  // test each remaining candidate coordinate for the distance farthest from ground zero
-		  double maxDist = 0;
-		  for (Object o: candidateCoords) {		  
-			  tempCoord = (Coordinate) o;
-			  double tempDist = tempCoord.distance(Parameters.groundZero.getCoordinate()); // for NWMD
-			  //double tempDist = tempCoord.distance(Parameters.epicenter);  // for Earthquake
-			  //System.out.print(" " + tempCoord + " " + tempDist + " max " + maxDist);
-			  if ( tempDist > maxDist ) {
-				  maxDist = tempDist;
-				  // assign max dist from ground zero a higher probability
-				  if (tempCoord.equals2D(testNegY)) {
-					  south = 0.7;
-				  }
-				  else if (tempCoord.equals2D(testPosY)) {
-					  north = 0.7;
-				  }
-				  else if (tempCoord.equals2D(testNegX)) {
-					  west = 0.7;
-				  }
-				  else east = 0.7;
-			  }
-		  }
-		  
-		  double total = north+south+east+west;
-		  double normalizedNorth = north/total;
-		  double normalizedSouth = south/total;
-		  double normalizedEast = east/total;
-		  double normalizedWest = west/total;
-		  // Cumulative distribution function (CDF)
-		  double sum = 0.0;
-		  double cdfNorth = normalizedNorth;
-		  sum += normalizedNorth;
-		  double cdfSouth = sum + normalizedSouth;
-		  sum += normalizedSouth;
-		  double cdfEast = sum + normalizedEast;
-		  sum += normalizedEast;
-		  double cdfWest = sum + normalizedWest;
-		  
-		  Random rnd = new Random();
-		  double randomDirection = rnd.nextDouble();
-		  
-		  if(randomDirection < cdfNorth) {
-			  // you should go to north
-			  alternativeCoord = testPosY;
-		  } else if(randomDirection < cdfSouth) {
-			  // you should go to south
-			  alternativeCoord = testNegY;
-		  } else if(randomDirection < cdfEast) {
-			  // you should go to east
-			  alternativeCoord = testPosX;
-		  } else {
-			  // go west
-			  alternativeCoord = testNegX;
-		  }		  
-		  
+	  if (south > 0 && (tempDist = distance(Coord.x, Coord.y-move, gz)) > maxDist) {
+		  maxDist = tempDist;
+		  south = 0.7;
 	  }
-	  //System.out.println();
-	  //System.out.println("Indv>nonroutine>getAway>findRandCoord>new Coord " + getID() + " " + alternativeCoord );
 	  
-	  return alternativeCoord;  
+	  double total = north+south+east+west;
+	  // Cumulative distribution function (CDF)
+	  double cdfNorth = north/total;
+	  double cdfSouth = cdfNorth + south/total;
+	  double cdfEast = cdfSouth + east/total;
+	  
+	  double randomDirection = state.random.nextDouble();
+	  
+	  if(randomDirection < cdfNorth) {
+		  // you should go to north
+		  return new Coordinate(Coord.x, (Coord.y+move));
+	  } else if(randomDirection < cdfSouth) {
+		  // you should go to south
+		  return new Coordinate(Coord.x, (Coord.y-move));
+	  } else if(randomDirection < cdfEast) {
+		  // you should go to east
+		  return new Coordinate((Coord.x+move), Coord.y);
+	  } else {
+		  // go west
+		  return new Coordinate((Coord.x-move), Coord.y);
+	  }
   }
 
 
-public Coordinate findAltCoord(GeomVectorField water, Coordinate Coord, double speed) {
+public Coordinate findAltCoord(WaterMask water, Coordinate Coord, double speed) {
 	  //System.out.println("Indv>nonroutine>getAway>findAltGoalPt>" + getID() + " blocked by water");
 	  
 	  // create 4 coordinates to test the direction of the water
@@ -1698,33 +1688,25 @@ public Coordinate findAltCoord(GeomVectorField water, Coordinate Coord, double s
 	  Coordinate testPosY = new Coordinate(Coord.x, (Coord.y+move));
 	  Coordinate testNegY = new Coordinate(Coord.x, (Coord.y-move));
 	  
-	  MasonGeometry testPosLat = new MasonGeometry(fact.createPoint(testPosX));
-	  MasonGeometry testNegLat = new MasonGeometry(fact.createPoint(testNegX));
-	  MasonGeometry testPosLong = new MasonGeometry(fact.createPoint(testPosY));
-	  MasonGeometry testNegLong = new MasonGeometry(fact.createPoint(testNegY));
 	  
 	  Bag candidateCoords = new Bag();
 	  Coordinate altCoord = new Coordinate();
 	  
 	  // Add coordinates not on water to a Bag of candidates for testing 
 	  // test PosX  
-	  Bag waterobjects1 = water.getCoveringObjects(testPosLat.getGeometry());
-	  if ( waterobjects1.isEmpty() ) {
+	  if ( !water.isWater(testPosX) ) {
 		  candidateCoords.add(testPosX);
 	  }	  
 	  // test NegX
-	  Bag waterobjects2 = water.getCoveringObjects(testNegLat.getGeometry());
-	  if ( waterobjects2.isEmpty() ) {
+	  if ( !water.isWater(testNegX) ) {
 		  candidateCoords.add(testNegX);
 	  }	
 	  // test PosY
-	  Bag waterobjects3 = water.getCoveringObjects(testPosLong.getGeometry());
-	  if ( waterobjects3.isEmpty() ) {
+	  if ( !water.isWater(testPosY) ) {
 		  candidateCoords.add(testPosY);
 	  }
 	  // test NegY
-	  Bag waterobjects4 = water.getCoveringObjects(testNegLong.getGeometry());
-	  if ( waterobjects4.isEmpty() ) {
+	  if ( !water.isWater(testNegY) ) {
 		  candidateCoords.add(testNegY);
 	  }
 	  //System.out.println("Indv>nonroutine>getAway>findAltGoalPt>candidates: ");
@@ -1749,7 +1731,7 @@ public Coordinate findAltCoord(GeomVectorField water, Coordinate Coord, double s
 }
 
 
-public Coordinate setAltGoalPt(GeomVectorField water, Coordinate Coord, double speed) {
+public Coordinate setAltGoalPt(WaterMask water, Coordinate Coord, double speed) {
 	  //System.out.println("Indv>nonroutine>getAway>findAltGoalPt>" + getID() + " blocked by water");
 	  
 	  // create 4 coordinates to test the direction of the water
@@ -1759,33 +1741,25 @@ public Coordinate setAltGoalPt(GeomVectorField water, Coordinate Coord, double s
 	  Coordinate testPosY = new Coordinate(Coord.x, (Coord.y+move));
 	  Coordinate testNegY = new Coordinate(Coord.x, (Coord.y-move));
 	  
-	  MasonGeometry testPosLat = new MasonGeometry(fact.createPoint(testPosX));
-	  MasonGeometry testNegLat = new MasonGeometry(fact.createPoint(testNegX));
-	  MasonGeometry testPosLong = new MasonGeometry(fact.createPoint(testPosY));
-	  MasonGeometry testNegLong = new MasonGeometry(fact.createPoint(testNegY));
 	  
 	  Bag candidateCoords = new Bag();
 	  Coordinate altGoal = new Coordinate();
 	  
 	  // Add coordinates not on water to a Bag of candidates for testing 
 	  // test PosX  
-	  Bag waterobjects1 = water.getCoveringObjects(testPosLat.getGeometry());
-	  if ( waterobjects1.isEmpty() ) {
+	  if ( !water.isWater(testPosX) ) {
 		  candidateCoords.add(testPosX);
 	  }	  
 	  // test NegX
-	  Bag waterobjects2 = water.getCoveringObjects(testNegLat.getGeometry());
-	  if ( waterobjects2.isEmpty() ) {
+	  if ( !water.isWater(testNegX) ) {
 		  candidateCoords.add(testNegX);
 	  }	
 	  // test PosY
-	  Bag waterobjects3 = water.getCoveringObjects(testPosLong.getGeometry());
-	  if ( waterobjects3.isEmpty() ) {
+	  if ( !water.isWater(testPosY) ) {
 		  candidateCoords.add(testPosY);
 	  }
 	  // test NegY
-	  Bag waterobjects4 = water.getCoveringObjects(testNegLong.getGeometry());
-	  if ( waterobjects4.isEmpty() ) {
+	  if ( !water.isWater(testNegY) ) {
 		  candidateCoords.add(testNegY);
 	  }
 	  //System.out.println("Indv>nonroutine>getAway>findAltGoalPt>candidates: ");
@@ -1873,8 +1847,8 @@ public Coordinate setAltGoalPt(GeomVectorField water, Coordinate Coord, double s
 		   if (victim != null)
 		   {
 			   	// move to victim
-			    currentCoord = victim.currentCoord;
-				updatePosition(victim.currentCoord);
+			    currentCoord = moveOwnCoord(victim.currentCoord.x, victim.currentCoord.y);
+				updatePosition(currentCoord);
 				aid(victim, currentStep);
 				return;
 		   }
@@ -1883,8 +1857,7 @@ public Coordinate setAltGoalPt(GeomVectorField water, Coordinate Coord, double s
 		   		if (victim != null)
 		   		{
 					// move step toward victim (only toward because not within 1 step)
-		   			Point here = fact.createPoint(currentCoord);  // first responder's location
-					double distToVictim = victim.getLocation().geometry.distance(here);
+					double distToVictim = victim.distanceTo(currentCoord);
 //					System.out.println("Agent>react>first responder>" + distToVictim + " movement: " + Parameters.fleeSlowestDegreesPerMin);
 		   			double convert = speedrate/distToVictim;
 		   			
@@ -1897,9 +1870,8 @@ public Coordinate setAltGoalPt(GeomVectorField water, Coordinate Coord, double s
 			   		double newLat = cLat + speedLat;
 			   		double newLong = cLong + speedLong;
 
-					Coordinate newCoord = new Coordinate(newLong, newLat);
-					currentCoord = new Coordinate(newLong,newLat);
-					updatePosition(newCoord);
+					currentCoord = moveOwnCoord(newLong, newLat);
+					updatePosition(currentCoord);
 		   			return;   // this agent's step done
 		   		}
 		   		else
@@ -1927,19 +1899,26 @@ public Coordinate setAltGoalPt(GeomVectorField water, Coordinate Coord, double s
 //	   Bag objs = new Bag();
 //	   objs = world.agents.getObjectsWithinDistance(location, 0.001);
 //	   for (obj o : objs)  
+	   if (state.victims != null) {
+		   // only unaided victims near the responder, worst status first
+		   return state.victims.neediest(currentCoord, range);
+	   }
+	   if (state.agentStore != null) {
+		   return state.agentStore.neediest(currentCoord.x, currentCoord.y, range);
+	   }
+	   
 	   Indv victim = null;					// holder for victim
 	   
 	   // go through victims and determine the unaided on with worst status (if any)
 	   for (Indv v: Log.indvList)  //(Indv v : Effects.r23Agents) need to update Effects
 	   {	
-			if ( (!v.dead) && !v.getIsFirstResp() )	// not dead nor 1st responder
+			if ( (!v.getDead()) && !v.getIsFirstResp() )	// not dead nor 1st responder
 			{
-				if ( (v.vStatus == 0) && (v.healthStatus != 0) )	// not yet attended to and needs help
+				if ( (v.getvStatus() == 0) && (v.getHealthStatus() != 0) )	// not yet attended to and needs help
 				{
-					Point here = fact.createPoint(currentCoord);  // first responder's location
-//					double dist = v.getLocation().geometry.distance(here);
+//					double dist = v.distanceTo(currentCoord);
 //					System.out.println("Agent>findNeediest...>close? dist= " + dist);
-					if (v.getLocation().geometry.distance(here) < range)
+					if (v.distanceTo(currentCoord) < range)
 					{
 						if (victim == null) 
 						{
@@ -1948,7 +1927,7 @@ public Coordinate setAltGoalPt(GeomVectorField water, Coordinate Coord, double s
 						}
 						else
 						{
-							if (v.healthStatus > victim.healthStatus)
+							if (v.getHealthStatus() > victim.getHealthStatus())
 							{
 								// new victim is more badly injured
 								victim = v;
@@ -1976,9 +1955,12 @@ public Coordinate setAltGoalPt(GeomVectorField water, Coordinate Coord, double s
 //	   System.out.println("Agent>aiding> victim: " + v + " health= " + v.healthStatus + " aided by " + f);
 	   //System.out.println("Agent>aiding> victim health= " + getHealthStatus());
 	   
-	   if (v.vStatus == 0)	// not yet aided
+	   if (v.getvStatus() == 0)	// not yet aided
 	   {
-		   	v.vStatus = 1;	// mark as being aided
+		   	v.setvStatus(1);	// mark as being aided
+		   	if (v.victims != null) {
+		   		v.victims.update(v);	// no longer waiting for aid
+		   	}
 		   	v.vStop = now;	// note end of aid
 		   	frStatus = 2;	// mark as providing aid
 		   	setHealthStatus(98); // mark as providing aid
@@ -1987,15 +1969,15 @@ public Coordinate setAltGoalPt(GeomVectorField water, Coordinate Coord, double s
   			Log.agentsTreated++;
 	   }
 	   else // so that they don't immediately switch back to searching for a victim
-	   if (v.vStatus == 1)// being aided - test stop
+	   if (v.getvStatus() == 1)// being aided - test stop
 	   {
 		   Log.inTreatment++;  // reset each step. updates to keep count current.
 		   
-		   if ( (now - v.vStart) > v.healthStatus)	// up to min of assistance (should be func of health status
+		   if ( (now - v.vStart) > v.getHealthStatus())	// up to min of assistance (should be func of health status
 		   {
-			   v.vStatus = 2;	// aided
+			   v.setvStatus(2);	// aided
 			   v.vStop = now;	// set when stopped
-			   v.healthStatus = v.healthStatus - 1;		// result of first aid
+			   v.setHealthStatus(v.getHealthStatus() - 1);		// result of first aid
 			   frStatus = 1;	// available to aid
 			   setHealthStatus(99); // not aiding victim
 			   getGeometry().setUserData(getHealthStatus());   
@@ -2031,7 +2013,7 @@ public Coordinate setAltGoalPt(GeomVectorField water, Coordinate Coord, double s
 	  // Assume agents stay in place at first
 	  
 	  // Check for nearest groups
-	  Bag nearestGroups = this.state.groups.getObjectsWithinDistance(this.getLocation(), .001); // within .1 km distance
+	  Bag nearestGroups = this.state.groupGrid.getObjectsWithinDistance(this.getLocation().geometry.getCoordinate(), Parameters.groupingDistance); // within .1 km distance
 	  
 	  if (nearestGroups.isEmpty()) { 
 		  //System.out.println("Indv->step->joinGroup->nearestGroups is Empty");	  
@@ -2082,7 +2064,7 @@ boolean makeGroup() {
 	  // Check for nearest individuals
 	  // should be set to .00001 for a 1 meter distance
 	  //System.out.println("Indv->step->joinGroup->makeGroup->" + this.getID() + " goal: " + this.getGoal());
-	  Bag nearestIndvs = this.state.indvs.getObjectsWithinDistance(this.getLocation(), .001); // within .1 km distance
+	  Bag nearestIndvs = this.state.indvGrid.getObjectsWithinDistance(this.getLocation().geometry.getCoordinate(), Parameters.groupingDistance); // within .1 km distance
 	  
 	  if (nearestIndvs.isEmpty()) {
 		  //System.out.println("Indv->step->joinGroup->makeGroup->nearestIndvs is Empty; no indvs near " + this.getID());
@@ -2121,7 +2103,7 @@ boolean makeGroup() {
 //							  Log.grpList.add(g); // Arraylist of the groups
 //							  state.schedule.scheduleRepeating(g);
 //							  Log.grouppopulation++;
-//							  state.groups.addGeometry(newGeometry);
+//							  state.groups.add(g);
 //							  
 //							  //System.out.println("Indv->joinGroup->makeGroup->group created: " + g.getID());
 //							  //System.out.println("Indv->joinGroup->makeGroup->group members: ");
@@ -2166,16 +2148,17 @@ boolean createEmerGroup(Bag nearestIndvs) {
 						  Integer grpID = state.idsToGrps.size(); // create group id
 						  //System.out.println("Indv>joinGroup>makeGroup>leader " + agent.getStartNode() + " " + agent.getStartNode().getCoordinate());
 						  //System.out.println("Indv>joinGroup>makeGroup>leader " + agent.getHomeNode() + " " + agent.getHomeNode().getCoordinate());
-						  Group g = new Group(state, serialVersionUID, grpID, agent, this, "emergent");
+						  Group g = new Group(state, grpID, agent, this, "emergent");
 						  madeGrp = true;
 						  Log.emerGroups += 1;
 						  // make the group movable & steppable in the model
 						  MasonGeometry newGeometry = g.getGeometry();
 						  newGeometry.isMovable = true;
 						  Log.grpList.add(g); // Arraylist of the groups
-						  state.schedule.scheduleRepeating(g);
+						  state.scheduleAgent(g);
 						  Log.grouppopulation++;
-						  state.groups.addGeometry(newGeometry);
+						  state.groups.add(g);
+						  state.groupGrid.add(g);
 						  state.emerGroups.add(g.getID()); // add group id to list of emergent groups
 						  
 						  //System.out.println("Indv->joinGroup->makeGroup->group created: " + g.getID());
@@ -2270,7 +2253,7 @@ public Group getGrp(String id, World world)	{
 					   		"\t"+ this.currentCoord.x+ 
 					   		"\t"+ this.currentCoord.y+ 
 					   		"\t" + this.ToWork+ 
-					   		"\t"+this.atWork+
+					   		"\t"+getatWork()+
 					   		"\t"+this.reachedDestination);
 			} catch (IOException e) {
 				// TODO Auto-generated catch block
@@ -0,0 +1,135 @@
+/**
+ *  Disaster ABM in MASON
+ *  Aug2020
+ */
+
+package disaster;
+
+// Class imports
+import java.util.Arrays;
+
+
+/**
+ * Landmark distances for the ALT (A*, landmarks, triangle inequality) heuristic
+ *   Landmarks are picked by farthest-point selection, and a Dijkstra from each one stores its
+ *   distance to every node in the A* metric (straight line edge length in degrees).
+ *   Every road edge is two directed edges of the same length, so d(L,v) = d(v,L) and one
+ *   search per landmark gives the bound |d(L,t) - d(L,v)| <= d(v,t).
+ *   The table belongs to one routing snapshot and is rebuilt with it.
+ */
+public class Landmarks {
+
+	final RoadGraph graph;
+	final int count;
+	final int[] landmarkNodes;
+	private final double[] dist;	// node-major: dist[v * count + i] is the distance from landmark i to node v
+
+
+	/**
+	 * @param graph routing snapshot
+	 * @param count number of landmarks to place
+	 */
+	public Landmarks(RoadGraph graph, int count) {
+		this.graph = graph;
+		int n = graph.numNodes;
+		this.count = Math.max(0, Math.min(count, n));
+		landmarkNodes = new int[this.count];
+		dist = new double[n * this.count];
+		long startTime = System.nanoTime();
+
+		NodeHeap heap = new NodeHeap(Math.max(1, n));
+		double[] d = new double[n];
+		double[] nearest = new double[n];	// distance from each node to its closest chosen landmark
+		Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+
+		// seed: the node farthest from an arbitrary start
+		int next = 0;
+		if (this.count > 0) {
+			dijkstra(0, d, heap);
+			next = farthest(d);
+		}
+
+		for (int i = 0; i < this.count; i++) {
+			landmarkNodes[i] = next;
+			dijkstra(next, d, heap);
+			for (int v = 0; v < n; v++) {
+				dist[v * this.count + i] = d[v];
+				if (d[v] < nearest[v]) {
+					nearest[v] = d[v];
+				}
+			}
+			// next landmark: the reachable node farthest from all landmarks so far
+			next = farthest(nearest);
+		}
+
+		System.out.println("Landmarks>placed " + this.count + " landmarks in (ms): " + (System.nanoTime() - startTime) / 1000000);
+	}
+
+
+	/**
+	 * Dijkstra over the snapshot from one node
+	 * @param source
+	 * @param d filled with the distances, infinity for unreachable nodes
+	 * @param heap
+	 */
+	private void dijkstra(int source, double[] d, NodeHeap heap) {
+		Arrays.fill(d, Double.POSITIVE_INFINITY);
+		heap.clear();
+		d[source] = 0;
+		heap.insertOrDecrease(source, 0);
+		while (!heap.isEmpty()) {
+			int u = heap.pop();
+			for (int e = graph.outStart[u]; e < graph.outStart[u + 1]; e++) {
+				int x = graph.edgeTo[e];
+				double nd = d[u] + graph.edgeLength[e];
+				if (nd < d[x]) {
+					d[x] = nd;
+					heap.insertOrDecrease(x, nd);
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * @param d
+	 * @return the node with the largest finite value
+	 */
+	private static int farthest(double[] d) {
+		int best = 0;
+		double max = -1;
+		for (int v = 0; v < d.length; v++) {
+			if (d[v] != Double.POSITIVE_INFINITY && d[v] > max) {
+				max = d[v];
+				best = v;
+			}
+		}
+		return best;
+	}
+
+
+	/**
+	 * Lower bound on the network distance from v to t
+	 * @param v node id
+	 * @param t node id
+	 * @return
+	 */
+	double lowerBound(int v, int t) {
+		double bound = 0;
+		int vi = v * count;
+		int ti = t * count;
+		for (int i = 0; i < count; i++) {
+			double dv = dist[vi + i];
+			double dt = dist[ti + i];
+			if (dv == Double.POSITIVE_INFINITY || dt == Double.POSITIVE_INFINITY) {
+				continue; // landmark in another component says nothing about this pair
+			}
+			double b = Math.abs(dt - dv);
+			if (b > bound) {
+				bound = b;
+			}
+		}
+		return bound;
+	}
+
+}
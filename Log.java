@@ -58,6 +58,8 @@
 	    // IDPs are identified when the agents try to go to a work or home location with null values
 	    public static int IDPhome;  // Internally Displaced Person (IDP) without a home
 	    public static int IDPwork;  // Internally Displaced Person (IDP) without a workplace -- i.e. work from home designation
+	    public static int routesRepaired;  // reroutes that reused the undamaged end of the old path
+	    public static int routesRecomputed;  // reroutes that needed a full path search
 
 	    public static int firstRespZone1;	// first responders in zone 1 (dead)
 	    public static int firstRespZone2;	// first responders in zone 2 (injured)
@@ -111,6 +113,12 @@
 	    	
 			// System print line of step counter
 			System.out.println("Log>step>" + steps);
+			System.out.println("Log>step>bytes allocated this step: " + state.allocations.readStep());
+			if (state.behaviors != null) {
+				System.out.println("Log>step>agents stepped: " + state.behaviors.getStepped());
+			}
+			System.out.println("Log>step>reroutes repaired: " + routesRepaired + " recomputed: " + routesRecomputed);
+			System.out.println("Log>step>agents re-indexed indvs: " + state.indvs.getReindexed() + " groups: " + state.groups.getReindexed());
 			
 			int maxsize = 0;
 			int minsize = 0;
@@ -190,6 +198,8 @@
 	    popZone3 = 0;
 	    IDPhome = 0;  // Internally Displaced Person (IDP) without a home
 	    IDPwork = 0;  // Internally Displaced Person (IDP) without a workplace -- i.e. work from home designation
+	    routesRepaired = 0;
+	    routesRecomputed = 0;
 	    
 	    agentsBlocked = 0;  // agents at water's edge or entered damage area and stopped
 	    inTreatment = 0;  // agents being treated
@@ -0,0 +1,126 @@
+/**
+ *  Disaster ABM in MASON
+ *  Aug2020
+ */
+
+package disaster;
+
+// Class imports
+import java.util.Arrays;
+
+
+/**
+ * Indexed binary min-heap of RoadGraph node ids keyed by a double, with decrease-key
+ *   Used by the Dijkstra style searches over the routing snapshot.  A node id is in the
+ *   heap at most once; popped nodes can be inserted again.
+ */
+class NodeHeap {
+
+	private final int[] heap;
+	private final int[] pos;		// node id -> position in heap, -1 if not in the heap
+	private final double[] key;		// node id -> key while in the heap
+	private int size = 0;
+
+
+	/**
+	 * @param numNodes number of node ids the heap can hold
+	 */
+	NodeHeap(int numNodes) {
+		heap = new int[numNodes];
+		pos = new int[numNodes];
+		key = new double[numNodes];
+		Arrays.fill(pos, -1);
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	boolean contains(int n) {
+		return pos[n] >= 0;
+	}
+
+	/**
+	 * @return the smallest key, or infinity if the heap is empty
+	 */
+	double minKey() {
+		return (size == 0) ? Double.POSITIVE_INFINITY : key[heap[0]];
+	}
+
+	/**
+	 * Inserts the node, or lowers its key if it is already in the heap with a larger one
+	 * @param n
+	 * @param k
+	 */
+	void insertOrDecrease(int n, double k) {
+		if (pos[n] < 0) {
+			key[n] = k;
+			pos[n] = size;
+			heap[size++] = n;
+			siftUp(pos[n]);
+		}
+		else if (k < key[n]) {
+			key[n] = k;
+			siftUp(pos[n]);
+		}
+	}
+
+	int pop() {
+		int min = heap[0];
+		size--;
+		if (size > 0) {
+			heap[0] = heap[size];
+			pos[heap[0]] = 0;
+			siftDown(0);
+		}
+		pos[min] = -1;
+		return min;
+	}
+
+	/**
+	 * Empties the heap; only the nodes still in it are touched
+	 */
+	void clear() {
+		for (int i = 0; i < size; i++) {
+			pos[heap[i]] = -1;
+		}
+		size = 0;
+	}
+
+	private void siftUp(int i) {
+		int n = heap[i];
+		double k = key[n];
+		while (i > 0) {
+			int parent = (i - 1) >> 1;
+			if (key[heap[parent]] <= k) {
+				break;
+			}
+			heap[i] = heap[parent];
+			pos[heap[i]] = i;
+			i = parent;
+		}
+		heap[i] = n;
+		pos[n] = i;
+	}
+
+	private void siftDown(int i) {
+		int n = heap[i];
+		double k = key[n];
+		int half = size >> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			int right = child + 1;
+			if (right < size && key[heap[right]] < key[heap[child]]) {
+				child = right;
+			}
+			if (key[heap[child]] >= k) {
+				break;
+			}
+			heap[i] = heap[child];
+			pos[heap[i]] = i;
+			i = child;
+		}
+		heap[i] = n;
+		pos[n] = i;
+	}
+}
@@ -0,0 +1,218 @@
+/**
+ *  Disaster ABM in MASON
+ *  Aug2020
+ */
+
+package disaster;
+
+// Class imports
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.planargraph.Node;
+import java.util.Arrays;
+import sim.util.Bag;
+
+
+/**
+ * Uniform grid over the road node coordinates of a routing snapshot
+ *   Answers nearest node queries with the Node itself, so agents no longer narrow a
+ *   roadIntersections radius search and then walk the whole road network to find the matching Node.
+ *   Cells hold about four nodes each, stored in CSR form: the nodes of cell c are
+ *   cellNodes[cellStart[c]] .. cellNodes[cellStart[c+1]-1].
+ *   Radius queries give detonation damage the nodes near ground zero without a pass over the network.
+ *   The index is built in one pass with the snapshot. Nodes removed by damage stay in their cells and
+ *   are skipped, see RoadGraph.remove, so damage costs nothing here.
+ */
+public class NodeIndex {
+
+	/**
+	 * Test applied to candidate nodes, e.g. to skip nodes inside the damage area
+	 */
+	interface Filter {
+		boolean accept(double x, double y);
+	}
+
+	final RoadGraph graph;
+	private final double minX, minY;
+	private final double cellSize;
+	private final int cols, rows;
+	private final int[] cellStart;
+	private final int[] cellNodes;
+
+
+	/**
+	 * @param graph routing snapshot
+	 */
+	public NodeIndex(RoadGraph graph) {
+		this.graph = graph;
+		int n = graph.numNodes;
+
+		double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+		double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < n; i++) {
+			x0 = Math.min(x0, graph.nodeX[i]);
+			y0 = Math.min(y0, graph.nodeY[i]);
+			x1 = Math.max(x1, graph.nodeX[i]);
+			y1 = Math.max(y1, graph.nodeY[i]);
+		}
+		if (n == 0) {
+			x0 = y0 = x1 = y1 = 0;
+		}
+		minX = x0;
+		minY = y0;
+
+		// about four nodes per cell
+		double area = (x1 - x0) * (y1 - y0);
+		double size = Math.sqrt(4 * area / Math.max(1, n));
+		cellSize = (size > 0) ? size : 0.001;
+		cols = (int) ((x1 - x0) / cellSize) + 1;
+		rows = (int) ((y1 - y0) / cellSize) + 1;
+
+		// count, prefix sum, then fill the cells
+		cellStart = new int[cols * rows + 1];
+		int[] cellOf = new int[n];
+		for (int i = 0; i < n; i++) {
+			cellOf[i] = col(graph.nodeX[i]) + row(graph.nodeY[i]) * cols;
+			cellStart[cellOf[i] + 1]++;
+		}
+		for (int c = 0; c < cols * rows; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		cellNodes = new int[n];
+		int[] fill = new int[cols * rows];
+		for (int i = 0; i < n; i++) {
+			cellNodes[cellStart[cellOf[i]] + fill[cellOf[i]]++] = i;
+		}
+	}
+
+
+	private int col(double x) {
+		return Math.max(0, Math.min(cols - 1, (int) ((x - minX) / cellSize)));
+	}
+
+	private int row(double y) {
+		return Math.max(0, Math.min(rows - 1, (int) ((y - minY) / cellSize)));
+	}
+
+
+	/**
+	 * Nearest road node to a point, searching rings of cells outward until no closer node can remain
+	 * @param x
+	 * @param y
+	 * @param filter nodes to consider, null for all
+	 * @return the node, or null if no node passes the filter
+	 */
+	public Node nearest(double x, double y, Filter filter) {
+		int cx = col(x);
+		int cy = row(y);
+		int maxRing = Math.max(cols, rows);
+		int best = -1;
+		double bestDist = Double.POSITIVE_INFINITY;
+
+		for (int ring = 0; ring <= maxRing; ring++) {
+			// cells from this ring outward are at least (ring - 1) * cellSize away
+			if (best >= 0 && bestDist <= (ring - 1) * cellSize) {
+				break;
+			}
+			for (int gy = cy - ring; gy <= cy + ring; gy++) {
+				if (gy < 0 || gy >= rows) {
+					continue;
+				}
+				// only the border of the ring is new
+				int step = (gy == cy - ring || gy == cy + ring) ? 1 : Math.max(1, 2 * ring);
+				for (int gx = cx - ring; gx <= cx + ring; gx += step) {
+					if (gx < 0 || gx >= cols) {
+						continue;
+					}
+					int c = gx + gy * cols;
+					for (int i = cellStart[c]; i < cellStart[c + 1]; i++) {
+						int v = cellNodes[i];
+						if (graph.removed[v]) {
+							continue;
+						}
+						double dx = graph.nodeX[v] - x;
+						double dy = graph.nodeY[v] - y;
+						double d = Math.sqrt(dx * dx + dy * dy);
+						if (d < bestDist && (filter == null || filter.accept(graph.nodeX[v], graph.nodeY[v]))) {
+							bestDist = d;
+							best = v;
+						}
+					}
+				}
+			}
+		}
+		return (best < 0) ? null : graph.nodes[best];
+	}
+
+
+	/**
+	 * Road nodes within a distance of a point, scanning only the cells that overlap the radius
+	 * @param x
+	 * @param y
+	 * @param radius in degrees, inclusive
+	 * @return Bag of the Nodes, in road network order
+	 */
+	public Bag within(double x, double y, double radius) {
+		int[] found = new int[16];
+		int count = 0;
+		for (int gy = row(y - radius); gy <= row(y + radius); gy++) {
+			for (int gx = col(x - radius); gx <= col(x + radius); gx++) {
+				int c = gx + gy * cols;
+				for (int i = cellStart[c]; i < cellStart[c + 1]; i++) {
+					int v = cellNodes[i];
+					if (graph.removed[v]) {
+						continue;
+					}
+					double dx = graph.nodeX[v] - x;
+					double dy = graph.nodeY[v] - y;
+					if (Math.sqrt(dx * dx + dy * dy) <= radius) {
+						if (count == found.length) {
+							found = Arrays.copyOf(found, 2 * count);
+						}
+						found[count++] = v;
+					}
+				}
+			}
+		}
+		Arrays.sort(found, 0, count);
+		Bag result = new Bag(count);
+		for (int i = 0; i < count; i++) {
+			result.add(graph.nodes[found[i]]);
+		}
+		return result;
+	}
+
+
+	/**
+	 * @param c
+	 * @return the road node at the coordinate, or null if there is none
+	 */
+	public Node nodeAt(Coordinate c) {
+		int cell = col(c.x) + row(c.y) * cols;
+		for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+			int v = cellNodes[i];
+			if (graph.nodeX[v] == c.x && graph.nodeY[v] == c.y && !graph.removed[v]) {
+				return graph.nodes[v];
+			}
+		}
+		return null;
+	}
+
+
+	/**
+	 * @param center
+	 * @param radius in degrees
+	 * @return filter passing nodes farther than radius from center
+	 */
+	static Filter outside(final Point center, final double radius) {
+		final double px = center.getX();
+		final double py = center.getY();
+		return new Filter() {
+			@Override
+			public boolean accept(double x, double y) {
+				return Math.sqrt((x - px) * (x - px) + (y - py) * (y - py)) > radius;
+			}
+		};
+	}
+
+}
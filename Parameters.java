@@ -43,6 +43,10 @@ public class Parameters
 	public static Boolean Emergent = true; // turn on emergent group behavior postimpact
 	public static int maxGrpSize = 100;  // group size limits
 	  // Note: this includes group commuting
+	public static double groupingDistance = .001;  // agents within this many degrees (~.1 km) can group
+	public static double agentGridCellSize = .001;  // cell size in degrees of the agent proximity grids, see AgentGrid
+	public static Boolean agentStore = true;  // keep indv state in columns for whole-population scans, see AgentStore
+	public static Boolean behaviorScheduling = true;  // step only agents whose behavior state has work, see BehaviorScheduler; false schedules every agent
 	
 	// Time of disaster
 	// NWMD Parameters from Effects Parameters
@@ -63,6 +67,7 @@ public class Parameters
 	public static String censusShape = "censusNYcommute.shp";
 	//3 Water
 	public static String waterShape = "NYCWater.shp";
+	public static double waterMaskMeters = 10;	// resolution of the water raster fleeing agents test moves against, see WaterMask
 	//4 Outer work places point
 	public static String outerwrkfile = "Rich_wrkid_out_May.csv";
 	//5 Work Places and RID Full Study Area
@@ -153,6 +158,47 @@ public class Parameters
 	
 	
 	
+	//===================================
+	/**
+	 * Routing Parameters
+	 */
+	//===================================
+	
+	// maximum number of (start node, goal node) paths kept by the path cache, 0 turns it off
+	public static int pathCacheSize = 50000;
+	
+	// search commute paths on a fork-join pool while building the population (needs the path cache)
+	public static Boolean parallelInit = true;
+	public static int initThreads = Runtime.getRuntime().availableProcessors();
+	public static Boolean initSpeedupReport = false;  // route the commute pairs again on one thread and report the speedup
+	
+	// tighten the A* straight line heuristic with landmark (ALT) distances; the data inputs
+	// report then compares node expansions against the straight line heuristic alone
+	public static Boolean landmarkHeuristic = false;
+	public static int numLandmarks = 16;
+	public static int benchmarkPairs = 1000;	// commute pairs sampled for routing comparisons in the report
+	
+	// answer path queries from a contraction hierarchy instead of A*; after detonation damage
+	// paths are found with A* on the damaged snapshot.  Weights are edge kilometers, or minutes at the
+	// speed limit when hierarchyTravelTime is set (impassable edges are then avoided)
+	public static Boolean useContractionHierarchy = false;
+	public static Boolean hierarchyTravelTime = false;
+	
+	// route on travel time at the speed limit, stretched by the agents on each edge, instead of
+	// straight line length; costs are refreshed every congestionRefreshSteps steps. This replaces
+	// the contraction hierarchy, whose preprocessing assumes fixed edge weights
+	public static Boolean congestionRouting = false;
+	public static int congestionRefreshSteps = 15;
+	
+	// find agent paths with bidirectional A* (forward from the start, backward from the goal);
+	// the data inputs report then compares settled nodes against A* on commute pairs
+	public static Boolean bidirectionalSearch = false;
+	
+	// after detonation, agents with no path home or to a shelter take the route to the closest
+	// exit node outside the damage area from a table built once, instead of searching for a temp location
+	public static Boolean evacuationRouting = false;
+	
+	
 	//===================================
 	/**
 	 * NWMD Parameters
@@ -0,0 +1,133 @@
+/**
+ *  Disaster ABM in MASON
+ *  Aug2020
+ */
+
+package disaster;
+
+// Class imports
+import com.vividsolutions.jts.planargraph.Node;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Least-recently-used cache of A* paths keyed by (start node, goal node)
+ *   Agents sharing a home and work/school road get the same commute path, so only the
+ *   first one pays for the search.  Failed searches are cached too, as an empty path.
+ *   Keys are RoadGraph node ids, so the cache is emptied whenever the snapshot is rebuilt.
+ *   Paths are kept and handed out as shared, immutable CompactPaths rather than a copy per agent.
+ *   The parallel population setup routes every commute pair up front; those paths are pinned, see
+ *   pin(), so the agent constructors find them all however many there are, then warm the cache.
+ */
+public class PathCache {
+
+	private final int capacity;
+	private final LinkedHashMap<Long, CompactPath> paths;
+	private HashMap<Long, CompactPath> pinned = null;	// paths routed ahead of the agents, read before the LRU
+
+	// counters for the WorldBuilder data input report
+	int hits = 0;
+	int misses = 0;
+
+
+	/**
+	 * @param capacity maximum number of paths held, 0 turns the cache off
+	 */
+	public PathCache(int capacity) {
+		this.capacity = capacity;
+		// access ordered so the eldest entry is the least recently used
+		this.paths = new LinkedHashMap<Long, CompactPath>(1024, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, CompactPath> eldest) {
+				return size() > PathCache.this.capacity;
+			}
+		};
+	}
+
+
+	/**
+	 * Returns the shortest path between two nodes, searching only on a cache miss
+	 * @param world
+	 * @param start
+	 * @param goal
+	 * @return the path, shared with every caller asking for the same nodes, empty if there is no path
+	 */
+	public synchronized CompactPath findPath(World world, Node start, Node goal) {
+
+		int s = world.roadGraph.nodeId(start);
+		int t = world.roadGraph.nodeId(goal);
+		if (capacity <= 0 || s < 0 || t < 0) {
+			return CompactPath.of(world.router.findPath(start, goal), world.edgeAttributes);
+		}
+
+		Long key = key(s, t);
+		CompactPath path = (pinned == null) ? null : pinned.get(key);
+		if (path == null) {
+			path = paths.get(key);
+		}
+		if (path != null) {
+			hits++;
+		}
+		else {
+			misses++;
+			path = CompactPath.of(world.router.findPath(start, goal), world.edgeAttributes);
+			paths.put(key, path);
+		}
+		return path;
+	}
+
+
+	/**
+	 * Answers lookups from paths found outside the cache, e.g. by the parallel commute routing in
+	 * WorldBuilder, ahead of the LRU and without evicting them; the searches count as misses
+	 * @param routed paths by key()
+	 */
+	public synchronized void pin(HashMap<Long, CompactPath> routed) {
+		pinned = routed;
+		misses += routed.size();
+	}
+
+
+	/**
+	 * Drops the pinned paths, first storing them in the LRU as far as its capacity allows
+	 * @param order keys in the order to store them, the last stored being the most recently used
+	 */
+	public synchronized void unpin(Iterable<Long> order) {
+		if (pinned == null) {
+			return;
+		}
+		for (Long key : order) {
+			CompactPath path = pinned.get(key);
+			if (path != null) {
+				paths.put(key, path);
+			}
+		}
+		pinned = null;
+	}
+
+
+	/**
+	 * Drops all cached paths; counters are kept for reporting
+	 */
+	public synchronized void clear() {
+		paths.clear();
+		pinned = null;
+	}
+
+	public boolean isEnabled() {
+		return capacity > 0;
+	}
+
+	public synchronized int size() {
+		return paths.size();
+	}
+
+	static long key(int start, int goal) {
+		return ((long) start << 32) | (goal & 0xffffffffL);
+	}
+
+}
@@ -0,0 +1,237 @@
+/**
+ *  Disaster ABM in MASON
+ *  Aug2020
+ */
+
+package disaster;
+
+// Class imports
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.planargraph.Node;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import sim.util.geo.GeomPlanarGraphDirectedEdge;
+import sim.util.geo.GeomPlanarGraphEdge;
+
+
+/**
+ * Compressed-sparse-row (CSR) snapshot of World.roadNetwork used for routing
+ *   Nodes get dense int ids, each directed edge gets a slot in the out-edge arrays
+ *   Slots keep the order of Node.getOutEdges() so searches visit edges as before
+ *   The snapshot is built once the network is loaded (see World.updateRoadGraph). Detonation damage
+ *   is applied in place: removed nodes are marked and their edge slots closed, with an infinite
+ *   length and no speed so that no search travels them, and new speed limits are copied to the
+ *   slots of the damaged edges. Ids and slots stay as they were.
+ */
+public class RoadGraph {
+
+	// nodes
+	final int numNodes;
+	final Node[] nodes;			// node id -> planar graph node
+	final double[] nodeX;		// node coordinates in degrees
+	final double[] nodeY;
+	private final HashMap<Node, Integer> nodeIds;
+
+	// directed edges in CSR order: the out edges of node n are slots outStart[n] .. outStart[n+1]-1
+	final int numEdges;
+	final int[] outStart;
+	final int[] edgeFrom;		// slot -> from node id
+	final int[] edgeTo;			// slot -> to node id
+	final double[] edgeLength;	// slot -> straight line length between the end nodes in degrees (A* cost)
+	final double[] edgeKm;		// slot -> road length in kilometers
+	final double[] edgeSpeed;	// slot -> speed limit in km/hour
+	final GeomPlanarGraphDirectedEdge[] dirEdges;	// slot -> directed edge, used to hand paths back for movement
+	final boolean[] removed;	// node id -> removed from the network by damage
+	final boolean[] closed;		// slot -> edge removed with one of its nodes
+	int numRemoved = 0;
+
+	// reverse adjacency: the slots entering node n are inEdges[inStart[n]] .. inEdges[inStart[n+1]-1]
+	final int[] inStart;
+	final int[] inEdges;
+
+
+	/**
+	 * Builds the snapshot from the world's road network and edge attributes
+	 * @param world
+	 */
+	public RoadGraph(World world) {
+
+		// number the nodes in the network's node order
+		ArrayList<Node> nodeList = new ArrayList<Node>();
+		Iterator<?> nodeIterator = world.roadNetwork.nodeIterator();
+		while (nodeIterator.hasNext()) {
+			nodeList.add((Node) nodeIterator.next());
+		}
+
+		numNodes = nodeList.size();
+		nodes = nodeList.toArray(new Node[numNodes]);
+		nodeX = new double[numNodes];
+		nodeY = new double[numNodes];
+		nodeIds = new HashMap<Node, Integer>(numNodes * 2);
+		removed = new boolean[numNodes];
+
+		int slots = 0;
+		for (int i = 0; i < numNodes; i++) {
+			Coordinate c = nodes[i].getCoordinate();
+			nodeX[i] = c.x;
+			nodeY[i] = c.y;
+			nodeIds.put(nodes[i], i);
+			slots += nodes[i].getOutEdges().getDegree();
+		}
+
+		numEdges = slots;
+		outStart = new int[numNodes + 1];
+		edgeFrom = new int[numEdges];
+		edgeTo = new int[numEdges];
+		edgeLength = new double[numEdges];
+		edgeKm = new double[numEdges];
+		edgeSpeed = new double[numEdges];
+		dirEdges = new GeomPlanarGraphDirectedEdge[numEdges];
+		closed = new boolean[numEdges];
+
+		// fill the out edge slots
+		int slot = 0;
+		int[] inDegree = new int[numNodes];
+		for (int i = 0; i < numNodes; i++) {
+			outStart[i] = slot;
+			List<?> outEdges = nodes[i].getOutEdges().getEdges();
+			for (Object o : outEdges) {
+				GeomPlanarGraphDirectedEdge de = (GeomPlanarGraphDirectedEdge) o;
+				GeomPlanarGraphEdge edge = (GeomPlanarGraphEdge) de.getEdge();
+				Integer to = nodeIds.get(de.getToNode());
+
+				dirEdges[slot] = de;
+				edgeFrom[slot] = i;
+				edgeTo[slot] = to;
+				edgeLength[slot] = AStar.length(de);
+				edgeKm[slot] = world.edgeAttributes.km(edge);
+				edgeSpeed[slot] = world.edgeAttributes.speedLimit(edge);
+				inDegree[to]++;
+				slot++;
+			}
+		}
+		outStart[numNodes] = slot;
+
+		// reverse adjacency for searches that run backward from a goal
+		inStart = new int[numNodes + 1];
+		for (int i = 0; i < numNodes; i++) {
+			inStart[i + 1] = inStart[i] + inDegree[i];
+		}
+		inEdges = new int[numEdges];
+		int[] fill = new int[numNodes];
+		for (int e = 0; e < numEdges; e++) {
+			int to = edgeTo[e];
+			inEdges[inStart[to] + fill[to]] = e;
+			fill[to]++;
+		}
+
+		System.out.println("RoadGraph>snapshot built: nodes " + numNodes + " directed edges " + numEdges);
+	}
+
+
+	/**
+	 * @param n
+	 * @return dense id of the node, or -1 if the node is not in the snapshot
+	 */
+	public int nodeId(Node n) {
+		if (n == null) {
+			return -1;
+		}
+		Integer id = nodeIds.get(n);
+		return (id == null) ? -1 : id;
+	}
+
+
+	/**
+	 * @param de
+	 * @return slot of the directed edge, or -1 if it is no longer part of the snapshot
+	 */
+	public int slotOf(GeomPlanarGraphDirectedEdge de) {
+		if (de == null) {
+			return -1;
+		}
+		int from = nodeId(de.getFromNode());
+		if (from < 0) {
+			return -1;
+		}
+		for (int e = outStart[from]; e < outStart[from + 1]; e++) {
+			if (dirEdges[e] == de) {
+				return closed[e] ? -1 : e;
+			}
+		}
+		return -1;
+	}
+
+
+	/**
+	 * Removes a node and closes the edge slots leaving and entering it, as World.roadNetwork.remove
+	 * drops the node's edges
+	 * @param n
+	 * @return the node's id, or -1 if it was not in the snapshot
+	 */
+	int remove(Node n) {
+		int v = nodeId(n);
+		if (v < 0) {
+			return -1;
+		}
+		removed[v] = true;
+		nodeIds.remove(n);
+		numRemoved++;
+		for (int e = outStart[v]; e < outStart[v + 1]; e++) {
+			close(e);
+		}
+		for (int i = inStart[v]; i < inStart[v + 1]; i++) {
+			close(inEdges[i]);
+		}
+		return v;
+	}
+
+
+	private void close(int e) {
+		closed[e] = true;
+		edgeLength[e] = Double.POSITIVE_INFINITY;
+		edgeSpeed[e] = 0;
+	}
+
+
+	/**
+	 * Copies the current speed limits of edges to their open slots, e.g. after detonation damage
+	 * @param world
+	 * @param ids edge ids, see EdgeAttributes
+	 * @param count number of ids used
+	 * @param changed receives the slots updated, at least 2 * count long, or null
+	 * @return number of slots updated
+	 */
+	int updateSpeeds(World world, int[] ids, int count, int[] changed) {
+		int updated = 0;
+		for (int i = 0; i < count; i++) {
+			GeomPlanarGraphEdge edge = world.edgeAttributes.edge(ids[i]);
+			for (int d = 0; d < 2; d++) {
+				int e = slotOf((GeomPlanarGraphDirectedEdge) edge.getDirEdge(d));
+				if (e >= 0) {
+					edgeSpeed[e] = world.edgeAttributes.speedLimit(edge);
+					if (changed != null) {
+						changed[updated] = e;
+					}
+					updated++;
+				}
+			}
+		}
+		return updated;
+	}
+
+
+	/**
+	 * Straight line distance in degrees between two nodes
+	 * @param a node id
+	 * @param b node id
+	 * @return
+	 */
+	double distance(int a, int b) {
+		return Math.sqrt(Math.pow(nodeX[a] - nodeX[b], 2)
+			+ Math.pow(nodeY[a] - nodeY[b], 2));
+	}
+
+}
@@ -0,0 +1,27 @@
+/**
+ *  Disaster ABM in MASON
+ *  Aug2020
+ */
+
+package disaster;
+
+// Class imports
+import com.vividsolutions.jts.planargraph.Node;
+import java.util.ArrayList;
+import sim.util.geo.GeomPlanarGraphDirectedEdge;
+
+
+/**
+ * A point-to-point search over the routing snapshot (see World.newRouter)
+ *   Implementations keep per-query search state, so one instance serves one thread
+ */
+public interface Router {
+
+	/**
+	 * @param start
+	 * @param goal
+	 * @return the directed edges from start to goal, empty if there is no path
+	 */
+	ArrayList<GeomPlanarGraphDirectedEdge> findPath(Node start, Node goal);
+
+}
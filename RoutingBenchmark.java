@@ -0,0 +1,158 @@
+/**
+ *  Disaster ABM in MASON
+ *  Aug2020
+ */
+
+package disaster;
+
+// Class imports
+import com.vividsolutions.jts.planargraph.Node;
+import java.util.ArrayList;
+import java.util.Arrays;
+import sim.util.geo.GeomPlanarGraphDirectedEdge;
+
+
+/**
+ * Routing comparisons printed with the WorldBuilder data inputs report
+ *   Runs on a sample of the population's home/work node pairs
+ */
+public class RoutingBenchmark {
+
+	/**
+	 * Samples up to Parameters.benchmarkPairs commute pairs, evenly spread over the population
+	 * @return pairs of {home node, work node}
+	 */
+	static ArrayList<Node[]> commutePairs() {
+		ArrayList<Node[]> pairs = new ArrayList<Node[]>();
+		int size = Log.indvList.size();
+		int step = Math.max(1, size / Math.max(1, Parameters.benchmarkPairs));
+		for (int i = 0; i < size && pairs.size() < Parameters.benchmarkPairs; i += step) {
+			Indv a = Log.indvList.get(i);
+			if (a.getHomeNode() != null && a.getWorkNode() != null && a.getHomeNode() != a.getWorkNode()) {
+				pairs.add(new Node[] {a.getHomeNode(), a.getWorkNode()});
+			}
+		}
+		return pairs;
+	}
+
+
+	/**
+	 * Compares node expansions of A* with the straight line heuristic against A* with
+	 * the landmark (ALT) heuristic on the same commute pairs
+	 * @param world
+	 */
+	static void compareHeuristics(World world) {
+		if (world.landmarks == null) {
+			return;
+		}
+		ArrayList<Node[]> pairs = commutePairs();
+		AStar euclidean = new AStar(world.roadGraph);
+		AStar alt = new AStar(world.roadGraph, world.landmarks);
+
+		long expandedEuclidean = 0, expandedAlt = 0;
+		long timeEuclidean = 0, timeAlt = 0;
+		int mismatches = 0;
+		for (Node[] pair : pairs) {
+			long t0 = System.nanoTime();
+			ArrayList<GeomPlanarGraphDirectedEdge> p1 = euclidean.astarPath(pair[0], pair[1]);
+			long t1 = System.nanoTime();
+			ArrayList<GeomPlanarGraphDirectedEdge> p2 = alt.astarPath(pair[0], pair[1]);
+			long t2 = System.nanoTime();
+			timeEuclidean += t1 - t0;
+			timeAlt += t2 - t1;
+			expandedEuclidean += euclidean.expanded;
+			expandedAlt += alt.expanded;
+			if (Math.abs(length(p1) - length(p2)) > 1e-9) {
+				mismatches++;
+			}
+		}
+
+		int n = Math.max(1, pairs.size());
+		System.out.println("RoutingBenchmark>A* heuristics on " + pairs.size() + " commute pairs, avg nodes expanded: euclidean " 
+				+ expandedEuclidean / n + "  landmarks(" + world.landmarks.count + ") " + expandedAlt / n
+				+ "  avg time (us): " + timeEuclidean / n / 1000 + " / " + timeAlt / n / 1000
+				+ "  path length mismatches: " + mismatches);
+	}
+
+
+	/**
+	 * Compares settled nodes of A* against bidirectional A* on the same commute pairs,
+	 * overall and for the longest quarter of the pairs by straight line distance
+	 * @param world
+	 */
+	static void compareDirections(World world) {
+		ArrayList<Node[]> pairs = commutePairs();
+		AStar forward = new AStar(world.roadGraph, world.landmarks, world.trafficCosts);
+		BidirectionalAStar both = new BidirectionalAStar(world.roadGraph, world.landmarks, world.trafficCosts);
+
+		// pairs at least this far apart count as long commutes
+		double[] spans = new double[pairs.size()];
+		for (int i = 0; i < pairs.size(); i++) {
+			spans[i] = pairs.get(i)[0].getCoordinate().distance(pairs.get(i)[1].getCoordinate());
+		}
+		double[] sorted = spans.clone();
+		Arrays.sort(sorted);
+		double longSpan = (sorted.length == 0) ? 0 : sorted[(sorted.length * 3) / 4];
+
+		long settledForward = 0, settledBoth = 0, longForward = 0, longBoth = 0;
+		long timeForward = 0, timeBoth = 0;
+		int longPairs = 0;
+		int mismatches = 0;
+		for (int i = 0; i < pairs.size(); i++) {
+			Node[] pair = pairs.get(i);
+			long t0 = System.nanoTime();
+			ArrayList<GeomPlanarGraphDirectedEdge> p1 = forward.astarPath(pair[0], pair[1]);
+			long t1 = System.nanoTime();
+			ArrayList<GeomPlanarGraphDirectedEdge> p2 = both.findPath(pair[0], pair[1]);
+			long t2 = System.nanoTime();
+			timeForward += t1 - t0;
+			timeBoth += t2 - t1;
+			settledForward += forward.expanded;
+			settledBoth += both.settled;
+			if (spans[i] >= longSpan) {
+				longForward += forward.expanded;
+				longBoth += both.settled;
+				longPairs++;
+			}
+			if (Math.abs(cost(forward, p1) - cost(forward, p2)) > 1e-9) {
+				mismatches++;
+			}
+		}
+
+		int n = Math.max(1, pairs.size());
+		int nl = Math.max(1, longPairs);
+		System.out.println("RoutingBenchmark>A* directions on " + pairs.size() + " commute pairs, avg nodes settled: forward " 
+				+ settledForward / n + "  bidirectional " + settledBoth / n
+				+ "  longest " + longPairs + ": " + longForward / nl + " / " + longBoth / nl
+				+ "  avg time (us): " + timeForward / n / 1000 + " / " + timeBoth / n / 1000
+				+ "  path cost mismatches: " + mismatches);
+	}
+
+
+	/**
+	 * @param search
+	 * @param path
+	 * @return cost of the path under the search's edge costs
+	 */
+	static double cost(AStar search, ArrayList<GeomPlanarGraphDirectedEdge> path) {
+		double cost = 0;
+		for (GeomPlanarGraphDirectedEdge e : path) {
+			cost += search.cost(search.graph.slotOf(e));
+		}
+		return cost;
+	}
+
+
+	/**
+	 * @param path
+	 * @return length of the path in the A* metric
+	 */
+	static double length(ArrayList<GeomPlanarGraphDirectedEdge> path) {
+		double length = 0;
+		for (GeomPlanarGraphDirectedEdge e : path) {
+			length += AStar.length(e);
+		}
+		return length;
+	}
+
+}
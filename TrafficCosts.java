@@ -0,0 +1,84 @@
+/**
+ *  Disaster ABM in MASON
+ *  Aug2020
+ */
+
+package disaster;
+
+// Class imports
+import sim.util.geo.GeomPlanarGraphEdge;
+
+
+/**
+ * Congestion-aware travel time per directed edge of a routing snapshot, used as the A* cost
+ *   when Parameters.congestionRouting is set. The cost is minutes at the speed limit, stretched by
+ *   the same traffic density slowdown agents feel in Agent.progress.
+ *   Costs are refreshed in a batch every Parameters.congestionRefreshSteps steps (see World.start)
+ *   so searches read a fixed array and pay nothing extra per query.
+ */
+public class TrafficCosts {
+
+	final RoadGraph graph;
+	final double[] cost;	// slot -> travel time in minutes, infinity if the edge can't be traveled
+	double scale = 0;		// lowest cost per degree of straight line length, keeps the A* heuristic admissible
+	int refreshes = 0;
+
+
+	/**
+	 * @param graph routing snapshot
+	 */
+	public TrafficCosts(RoadGraph graph) {
+		this.graph = graph;
+		this.cost = new double[graph.numEdges];
+	}
+
+
+	/**
+	 * Recomputes every edge cost from the speed limits in the snapshot and the agents now on each edge
+	 * @param world
+	 */
+	void refresh(World world) {
+		double minRatio = Double.POSITIVE_INFINITY;
+		for (int e = 0; e < graph.numEdges; e++) {
+			double minutes = edgeCost(world, e);
+			cost[e] = minutes;
+			if ((minutes < Double.POSITIVE_INFINITY) && (graph.edgeLength[e] > 0)) {
+				minRatio = Math.min(minRatio, minutes / graph.edgeLength[e]);
+			}
+		}
+		scale = (minRatio == Double.POSITIVE_INFINITY) ? 0 : minRatio;
+		refreshes++;
+	}
+
+
+	/**
+	 * Recomputes the costs of edges whose speed limit changed, e.g. after detonation damage
+	 *   Damage only slows or closes edges, so the heuristic scale stays a lower bound and is kept
+	 * @param world
+	 * @param slots
+	 * @param count number of slots used
+	 */
+	void update(World world, int[] slots, int count) {
+		for (int i = 0; i < count; i++) {
+			cost[slots[i]] = edgeCost(world, slots[i]);
+		}
+	}
+
+
+	private double edgeCost(World world, int e) {
+		double km = graph.edgeKm[e];
+		double speed = graph.edgeSpeed[e];
+		if (speed <= 0) {
+			return Double.POSITIVE_INFINITY; // damaged road, can't be traveled
+		}
+
+		// agents move at min(1, 1000 * km / (traffic * 5)) of their rate, see Agent.progress
+		double minutes = km / speed * 60;
+		int traffic = world.edgeTraffic.get((GeomPlanarGraphEdge) graph.dirEdges[e].getEdge());
+		if (km > 0) {
+			minutes *= Math.max(1, traffic * 5 / (1000 * km));
+		}
+		return minutes;
+	}
+
+}
@@ -0,0 +1,233 @@
+/**
+ *  Disaster ABM in MASON
+ *  Aug2020
+ */
+
+package disaster;
+
+// Class imports
+import com.vividsolutions.jts.geom.Coordinate;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+
+/**
+ * Victims first responders can aid, bucketed by grid cell for Indv.findNeediestVictim
+ *   Holds the indvs that pass the same test as the original scan of Log.indvList: alive, not a first
+ *   responder, not yet aided and health status not 0. Each cell keeps its victims in a max-heap on
+ *   health status, ties going to the earlier agent of Log.indvList, so a search only walks the top
+ *   of the heaps in the cells its range overlaps.
+ *   Built at detonation; Indv keeps its entry current when its health, victim status or position changes.
+ */
+public class VictimRegistry {
+
+	/**
+	 * Heap of the victims in one cell, the neediest at index 0
+	 */
+	private static class Cell {
+		Indv[] heap = new Indv[4];
+		int size = 0;
+	}
+
+	private final double cellSize;
+	private final HashMap<Long, Cell> cells = new HashMap<Long, Cell>();
+	private int size = 0;
+
+
+	/**
+	 * @param cellSize in degrees
+	 * @param agents all indvs, in Log.indvList order
+	 */
+	public VictimRegistry(double cellSize, ArrayList<Indv> agents) {
+		this.cellSize = cellSize;
+		for (int i = 0; i < agents.size(); i++) {
+			Indv a = agents.get(i);
+			a.victims = this;
+			a.victimRank = i;
+			a.victimSlot = -1;
+			update(a);
+		}
+		System.out.println("VictimRegistry>" + size + " victims in " + cells.size() + " cells");
+	}
+
+
+	private long cell(double x, double y) {
+		long cx = (long) Math.floor(x / cellSize);
+		long cy = (long) Math.floor(y / cellSize);
+		return (cx << 32) ^ (cy & 0xffffffffL);
+	}
+
+
+	/**
+	 * @param v
+	 * @return true if first responders can aid the agent, the test of the original victim search
+	 */
+	static boolean isVictim(Indv v) {
+		return !v.getDead() && !v.getIsFirstResp() && (v.getvStatus() == 0) && (v.getHealthStatus() != 0);
+	}
+
+
+	/**
+	 * Adds, removes, moves or reorders the agent's entry after a change to its state or position
+	 * @param v
+	 */
+	void update(Indv v) {
+		if (!isVictim(v)) {
+			if (v.victimSlot >= 0) {
+				remove(v);
+			}
+			return;
+		}
+		Coordinate c = v.getGeometry().geometry.getCoordinate();
+		long key = cell(c.x, c.y);
+		if (v.victimSlot >= 0 && key != v.victimCell) {
+			remove(v);
+		}
+		if (v.victimSlot < 0) {
+			insert(v, key);
+		}
+		else {
+			// health may have changed either way
+			Cell cell = cells.get(key);
+			siftDown(cell, siftUp(cell, v.victimSlot));
+		}
+	}
+
+
+	/**
+	 * Neediest victim within range of a point: highest health status, ties to the earliest in Log.indvList
+	 * @param c
+	 * @param range in degrees, exclusive
+	 * @return the victim, or null if there is none in range
+	 */
+	Indv neediest(Coordinate c, double range) {
+		Indv best = null;
+		long x0 = (long) Math.floor((c.x - range) / cellSize);
+		long x1 = (long) Math.floor((c.x + range) / cellSize);
+		long y0 = (long) Math.floor((c.y - range) / cellSize);
+		long y1 = (long) Math.floor((c.y + range) / cellSize);
+		for (long cx = x0; cx <= x1; cx++) {
+			for (long cy = y0; cy <= y1; cy++) {
+				Cell cell = cells.get((cx << 32) ^ (cy & 0xffffffffL));
+				if (cell != null) {
+					best = search(cell, 0, c, range, best);
+				}
+			}
+		}
+		return best;
+	}
+
+
+	/**
+	 * Walks a heap from node i, skipping subtrees that can't beat the best victim found so far
+	 * @return the better of best and the neediest victim in range under node i
+	 */
+	private Indv search(Cell cell, int i, Coordinate c, double range, Indv best) {
+		if (i >= cell.size) {
+			return best;
+		}
+		Indv v = cell.heap[i];
+		if (best != null && !needier(v, best)) {
+			return best; // nothing below is needier than v
+		}
+		Coordinate p = v.getGeometry().geometry.getCoordinate();
+		double dx = p.x - c.x;
+		double dy = p.y - c.y;
+		if (Math.sqrt(dx * dx + dy * dy) < range) {
+			return v; // needier than anything below it
+		}
+		best = search(cell, 2 * i + 1, c, range, best);
+		return search(cell, 2 * i + 2, c, range, best);
+	}
+
+
+	/**
+	 * @return true if a comes before b: worse health, or same health and earlier in Log.indvList
+	 */
+	private static boolean needier(Indv a, Indv b) {
+		return (a.getHealthStatus() > b.getHealthStatus())
+				|| ((a.getHealthStatus() == b.getHealthStatus()) && (a.victimRank < b.victimRank));
+	}
+
+
+	private void insert(Indv v, long key) {
+		Cell cell = cells.get(key);
+		if (cell == null) {
+			cell = new Cell();
+			cells.put(key, cell);
+		}
+		if (cell.size == cell.heap.length) {
+			Indv[] grown = new Indv[2 * cell.size];
+			System.arraycopy(cell.heap, 0, grown, 0, cell.size);
+			cell.heap = grown;
+		}
+		v.victimCell = key;
+		set(cell, cell.size++, v);
+		siftUp(cell, v.victimSlot);
+		size++;
+	}
+
+
+	private void remove(Indv v) {
+		Cell cell = cells.get(v.victimCell);
+		int i = v.victimSlot;
+		Indv last = cell.heap[--cell.size];
+		cell.heap[cell.size] = null;
+		v.victimSlot = -1;
+		if (last != v) {
+			set(cell, i, last);
+			siftDown(cell, siftUp(cell, i));
+		}
+		if (cell.size == 0) {
+			cells.remove(v.victimCell);
+		}
+		size--;
+	}
+
+
+	private void set(Cell cell, int i, Indv v) {
+		cell.heap[i] = v;
+		v.victimSlot = i;
+	}
+
+
+	private int siftUp(Cell cell, int i) {
+		Indv v = cell.heap[i];
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (!needier(v, cell.heap[parent])) {
+				break;
+			}
+			set(cell, i, cell.heap[parent]);
+			i = parent;
+		}
+		set(cell, i, v);
+		return i;
+	}
+
+
+	private void siftDown(Cell cell, int i) {
+		Indv v = cell.heap[i];
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= cell.size) {
+				break;
+			}
+			if (child + 1 < cell.size && needier(cell.heap[child + 1], cell.heap[child])) {
+				child++;
+			}
+			if (!needier(cell.heap[child], v)) {
+				break;
+			}
+			set(cell, i, cell.heap[child]);
+			i = child;
+		}
+		set(cell, i, v);
+	}
+
+
+	public int size() {
+		return size;
+	}
+
+}
@@ -0,0 +1,217 @@
+/**
+ *  Disaster ABM in MASON
+ *  Aug2020
+ */
+
+package disaster;
+
+// Class imports
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+import java.util.Arrays;
+import java.util.BitSet;
+import sim.field.geo.GeomVectorField;
+import sim.util.geo.MasonGeometry;
+
+
+/**
+ * Bit raster of the water polygons for the water tests of agents fleeing on foot
+ *   A cell is marked shore when a polygon boundary may pass through it, otherwise it lies wholly
+ *   inside or outside the water and its wet bit answers the test. Only points in shore cells fall
+ *   back to the exact waterField.getCoveringObjects test, on a probe point kept for the purpose,
+ *   so agents no longer move their own geometry to ask whether a spot is water.
+ *   Built once from the water layer in WorldBuilder; the water doesn't change during a run.
+ */
+public class WaterMask {
+
+	private static final long MAX_CELLS = 1L << 28;	// 32MB per bit set
+
+	private final GeomVectorField water;
+	private final double minX, minY;
+	private final double cellSize;
+	private final int cols, rows;
+	private final BitSet wet = new BitSet();		// cell lies inside water
+	private final BitSet shore = new BitSet();		// cell may hold a water boundary, tested exactly
+	private final Point probe = new GeometryFactory().createPoint(new Coordinate(0, 0));
+	int exactTests = 0;
+
+
+	/**
+	 * @param water polygons of the water layer
+	 * @param cellSize in degrees
+	 */
+	public WaterMask(GeomVectorField water, double cellSize) {
+		this.water = water;
+
+		Envelope env = new Envelope();
+		for (Object o : water.getGeometries()) {
+			env.expandToInclude(((MasonGeometry) o).geometry.getEnvelopeInternal());
+		}
+		if (env.isNull()) {
+			env.expandToInclude(0, 0);
+		}
+		minX = env.getMinX();
+		minY = env.getMinY();
+
+		// coarsen the raster if the water layer is too large for the requested resolution
+		double size = cellSize;
+		while ((long) (env.getWidth() / size + 1) * (long) (env.getHeight() / size + 1) > MAX_CELLS) {
+			size *= 2;
+		}
+		this.cellSize = size;
+		cols = (int) (env.getWidth() / size) + 1;
+		rows = (int) (env.getHeight() / size) + 1;
+
+		for (Object o : water.getGeometries()) {
+			Geometry g = ((MasonGeometry) o).geometry;
+			for (int i = 0; i < g.getNumGeometries(); i++) {
+				Geometry part = g.getGeometryN(i);
+				if (part instanceof Polygon) {
+					fill((Polygon) part);
+				}
+				else {
+					markShore(part.getCoordinates()); // lines and points only cover points on them
+				}
+			}
+		}
+		System.out.println("WaterMask>" + cols + " x " + rows + " cells of " + size + " degrees, "
+				+ wet.cardinality() + " wet and " + shore.cardinality() + " shore");
+	}
+
+
+	/**
+	 * @param c
+	 * @return true if the point is in the water, same as a non-empty waterField.getCoveringObjects
+	 */
+	public boolean isWater(Coordinate c) {
+		return isWater(c.x, c.y);
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return true if the point is in the water
+	 */
+	public boolean isWater(double x, double y) {
+		if (x < minX || y < minY) {
+			return false; // outside every water polygon's envelope
+		}
+		int cx = (int) ((x - minX) / cellSize);
+		int cy = (int) ((y - minY) / cellSize);
+		if (cx >= cols || cy >= rows) {
+			return false;
+		}
+		int cell = cx + cy * cols;
+		if (shore.get(cell)) {
+			exactTests++;
+			Coordinate p = probe.getCoordinate();
+			p.x = x;
+			p.y = y;
+			probe.geometryChanged();
+			return !water.getCoveringObjects(probe).isEmpty();
+		}
+		return wet.get(cell);
+	}
+
+
+	/**
+	 * Marks the boundary cells of a polygon as shore and sets the wet bit of the cells whose
+	 * centers lie inside it, by even-odd crossings of its rings along each row of cell centers
+	 * @param p
+	 */
+	private void fill(Polygon p) {
+		Envelope env = p.getEnvelopeInternal();
+		int r0 = row(env.getMinY());
+		int r1 = row(env.getMaxY());
+		double[][] xs = new double[r1 - r0 + 1][];
+		int[] counts = new int[r1 - r0 + 1];
+
+		for (int k = -1; k < p.getNumInteriorRing(); k++) {
+			Coordinate[] ring = (k < 0) ? p.getExteriorRing().getCoordinates() : p.getInteriorRingN(k).getCoordinates();
+			markShore(ring);
+			for (int i = 0; i + 1 < ring.length; i++) {
+				Coordinate a = ring[i];
+				Coordinate b = ring[i + 1];
+				if (a.y == b.y) {
+					continue;
+				}
+				double lo = Math.min(a.y, b.y);
+				double hi = Math.max(a.y, b.y);
+				// rows whose center line y satisfies lo <= y < hi, so a vertex is crossed once
+				for (int r = Math.max(r0, (int) Math.ceil((lo - minY) / cellSize - 0.5)); r <= r1; r++) {
+					double y = minY + (r + 0.5) * cellSize;
+					if (y >= hi) {
+						break;
+					}
+					if (y < lo) {
+						continue;
+					}
+					int j = r - r0;
+					if (xs[j] == null) {
+						xs[j] = new double[4];
+					}
+					else if (counts[j] == xs[j].length) {
+						xs[j] = Arrays.copyOf(xs[j], 2 * counts[j]);
+					}
+					xs[j][counts[j]++] = a.x + (y - a.y) * (b.x - a.x) / (b.y - a.y);
+				}
+			}
+		}
+
+		for (int j = 0; j < xs.length; j++) {
+			if (counts[j] == 0) {
+				continue;
+			}
+			Arrays.sort(xs[j], 0, counts[j]);
+			int base = (r0 + j) * cols;
+			for (int i = 0; i + 1 < counts[j]; i += 2) {
+				// cells whose center lies between a pair of crossings are inside
+				for (int c = Math.max(0, (int) Math.ceil((xs[j][i] - minX) / cellSize - 0.5)); c < cols; c++) {
+					if (minX + (c + 0.5) * cellSize >= xs[j][i + 1]) {
+						break;
+					}
+					wet.set(base + c);
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Marks every cell a chain of segments may pass through: samples every half cell, each
+	 * marking its own cell and the eight around it
+	 * @param pts
+	 */
+	private void markShore(Coordinate[] pts) {
+		for (int i = 0; i < pts.length; i++) {
+			Coordinate a = pts[i];
+			Coordinate b = (i + 1 < pts.length) ? pts[i + 1] : a;
+			int n = (int) Math.ceil(Math.max(Math.abs(b.x - a.x), Math.abs(b.y - a.y)) / (cellSize / 2)) + 1;
+			for (int k = 0; k <= n; k++) {
+				double x = a.x + (b.x - a.x) * k / n;
+				double y = a.y + (b.y - a.y) * k / n;
+				int cx = col(x);
+				int cy = row(y);
+				for (int gy = Math.max(0, cy - 1); gy <= Math.min(rows - 1, cy + 1); gy++) {
+					for (int gx = Math.max(0, cx - 1); gx <= Math.min(cols - 1, cx + 1); gx++) {
+						shore.set(gx + gy * cols);
+					}
+				}
+			}
+		}
+	}
+
+
+	private int col(double x) {
+		return Math.max(0, Math.min(cols - 1, (int) ((x - minX) / cellSize)));
+	}
+
+	private int row(double y) {
+		return Math.max(0, Math.min(rows - 1, (int) ((y - minY) / cellSize)));
+	}
+
+}
@@ -13,10 +13,13 @@ import java.time.Clock;
 import java.time.Instant;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 
 // Class Imports
 import sim.engine.*;
+import com.vividsolutions.jts.planargraph.Node;
 import sim.util.geo.GeomPlanarGraph;
 import sim.util.geo.GeomPlanarGraphEdge;
 import sim.field.geo.GeomVectorField;
@@ -47,31 +50,43 @@ public class World extends SimState {
 	// create basic field/grid environments
     public GeomVectorField censusTracts = new GeomVectorField();  // visualize census tracts
     public GeomVectorField waterField = new GeomVectorField();  // visualize bodies of water
+    WaterMask waterMask = null;  // raster of waterField for water tests of agents on foot, built in WorldBuilder
     public GeomVectorField quakeField = new GeomVectorField();  // visualize earthquake boundaries
     
     // set up globals for buildings (ABM agents) and agent grid
     public GeomVectorField bldgField = new GeomVectorField(); // visualize building locations (home, work, school)
     
     // set up globals for agents and agent grid
-    public GeomVectorField indvs = new GeomVectorField();  // holds individual agents on field
-    public GeomVectorField groups = new GeomVectorField();  // holds group agents on field
+    public AgentField indvs = new AgentField();  // holds individual agents on field
+    public AgentField groups = new AgentField();  // holds group agents on field
     
     // set up globals for roads and road network
     public GeomVectorField roads = new GeomVectorField();
-    public GeomVectorField roadIntersections = new GeomVectorField();
     public GeomPlanarGraph roadNetwork = new GeomPlanarGraph();
+    AgentGrid indvGrid = new AgentGrid(Parameters.agentGridCellSize);  // proximity grid over the indvs, for grouping
+    AgentGrid groupGrid = new AgentGrid(Parameters.agentGridCellSize);  // proximity grid over the groups, for grouping
+    RoadGraph roadGraph = null;  // compact routing snapshot of roadNetwork, see updateRoadGraph()
+    NodeIndex nodeIndex = null;  // grid over roadGraph node coordinates for nearest node lookups
+    AStar pathfinder = null;  // shared A* search over roadGraph, reuses its per-node state between queries
+    Landmarks landmarks = null;  // optional ALT landmark table over roadGraph, see Parameters.landmarkHeuristic
+    ContractionHierarchy hierarchy = null;  // optional preprocessed index over roadGraph, see Parameters.useContractionHierarchy
+    TrafficCosts trafficCosts = null;  // optional congestion-aware edge costs over roadGraph, see Parameters.congestionRouting
+    Router router = null;  // search used for agent paths: pathfinder, a bidirectional search or a hierarchy query
+    EvacuationTable evacuation = null;  // routes to the exits outside the damage area, built at detonation, see Parameters.evacuationRouting
+    AgentStore agentStore = null;  // columns holding indv state for whole-population scans, created in WorldBuilder
+    AllocationCounter allocations = new AllocationCounter();  // heap allocated per step, reported by Log
+    BehaviorScheduler behaviors = null;  // steps agents by behavior state, see Parameters.behaviorScheduling
+    VictimRegistry victims = null;  // unaided victims by grid cell for first responder searches, built at detonation
+    PathCache pathCache = new PathCache(Parameters.pathCacheSize);  // paths already found, keyed by start and goal node
    
     // mapping between unique road network edge IDs and edge structures themselves
     HashMap <String, GeomPlanarGraphEdge> idsToEdges = 
     		new HashMap <String, GeomPlanarGraphEdge> ();
-    HashMap <GeomPlanarGraphEdge, Double> edgesToDistance =   // length of edge in kilometers
-    		new HashMap <GeomPlanarGraphEdge, Double> ();
-    HashMap <GeomPlanarGraphEdge, Double> edgesToSpeedLimit =   // speed limit of the edge(road) segment
-    		new HashMap <GeomPlanarGraphEdge, Double> ();
-    HashMap <GeomPlanarGraphEdge, ArrayList <Agent>> edgeTraffic =   // list of agents on each edge
-    		new HashMap <GeomPlanarGraphEdge, ArrayList <Agent>> ();
+    EdgeAttributes edgeAttributes = null;   // length, speed limit, road class and damage of each edge, by edge id
+    EdgeOccupancy edgeTraffic = null;   // number of agents on each edge, by edge id, built in WorldBuilder
     
     // mapping of agents to their agentID
+    IdDictionary ids = new IdDictionary();  // numbers the IDs read by WorldBuilder, for BitSet ID sets
     HashMap <String, Indv> idsToIndvs = new HashMap <String, Indv> ();	// map of individuals to their IDs
     HashMap <String, Group> idsToGrps = new HashMap <String, Group> (); // map of groups to their IDs
    
@@ -104,7 +119,148 @@ public class World extends SimState {
     		super(1);	// Set to one for debugging
     }
 
-    
+
+    /** indvs / groups re-indexed in their fields by the last spatial index update, shown in the model inspector */
+    public int getIndvsReindexed()	{ return indvs.getReindexed(); }
+    public int getGroupsReindexed()	{ return groups.getReindexed(); }
+
+    /** bytes allocated by the schedule thread in the last step, shown in the model inspector */
+    public long getAllocatedLastStep()	{ return allocations.getLastStep(); }
+
+    /** indvs and groups stepped in the last step, -1 if every agent is scheduled, shown in the model inspector */
+    public int getAgentsStepped()	{ return (behaviors == null) ? -1 : behaviors.getStepped(); }
+
+
+    /**
+     * Schedules an indv, through the behavior scheduler if in use
+     * @param a
+     */
+    void scheduleAgent(Indv a) {
+    	if (behaviors != null) {
+    		behaviors.add(a);
+    	}
+    	else {
+    		schedule.scheduleRepeating(a);
+    	}
+    }
+
+
+    /**
+     * Schedules a group, through the behavior scheduler if in use
+     * @param g
+     */
+    void scheduleAgent(Group g) {
+    	if (behaviors != null) {
+    		behaviors.add(g);
+    	}
+    	else {
+    		schedule.scheduleRepeating(g);
+    	}
+    }
+
+
+	/**
+	 * Rebuilds the routing snapshot of the road network
+	 * Called once the network is loaded and again whenever nodes or edges are removed
+	 * or edge attributes change, since searches run on the snapshot and not on roadNetwork
+	 */
+	void updateRoadGraph() {
+		roadGraph = new RoadGraph(this);
+		nodeIndex = new NodeIndex(roadGraph);
+		if (Parameters.landmarkHeuristic) {
+			landmarks = new Landmarks(roadGraph, Parameters.numLandmarks);
+		}
+		if (Parameters.congestionRouting) {
+			trafficCosts = new TrafficCosts(roadGraph);
+			trafficCosts.refresh(this);
+		}
+		pathfinder = new AStar(roadGraph, landmarks, trafficCosts);
+		if (Parameters.useContractionHierarchy && !Parameters.congestionRouting) {
+			hierarchy = new ContractionHierarchy(roadGraph, Parameters.hierarchyTravelTime);
+		}
+		router = newRouter();
+		evacuation = null; // built on the damaged snapshot by Effects.detonation
+		pathCache.clear(); // cached paths refer to the old network
+	}
+	
+	
+	/**
+	 * Copies the new speed limits of damaged edges to the routing snapshot and its traffic costs
+	 * @param ids edge ids, see EdgeAttributes
+	 * @param count number of ids used
+	 */
+	void updateEdgeSpeeds(int[] ids, int count) {
+		int[] slots = new int[2 * count];
+		int updated = roadGraph.updateSpeeds(this, ids, count, slots);
+		if (trafficCosts != null) {
+			trafficCosts.update(this, slots, updated);
+		}
+	}
+
+
+	/**
+	 * Removes damaged nodes from the routing snapshot in place, at a cost that grows with the damage
+	 * rather than the network. Node ids are kept, so the node index and the landmark distances stay
+	 * valid: removing edges only lengthens paths and the landmark bounds stay admissible. A contraction
+	 * hierarchy's shortcuts may run over removed edges, so it is dropped and paths are found with A*.
+	 * @param nodes removed from roadNetwork
+	 */
+	void removeRoadNodes(List<Node> nodes) {
+		int[] slots = new int[16];
+		int count = 0;
+		for (Node n : nodes) {
+			int v = roadGraph.remove(n);
+			if ((v >= 0) && (trafficCosts != null)) {
+				// closed slots have no speed, their cost becomes infinite
+				int degree = (roadGraph.outStart[v + 1] - roadGraph.outStart[v]) + (roadGraph.inStart[v + 1] - roadGraph.inStart[v]);
+				if (count + degree > slots.length) {
+					slots = Arrays.copyOf(slots, 2 * (count + degree));
+				}
+				for (int e = roadGraph.outStart[v]; e < roadGraph.outStart[v + 1]; e++) {
+					slots[count++] = e;
+				}
+				for (int i = roadGraph.inStart[v]; i < roadGraph.inStart[v + 1]; i++) {
+					slots[count++] = roadGraph.inEdges[i];
+				}
+			}
+		}
+		if (trafficCosts != null) {
+			trafficCosts.update(this, slots, count);
+		}
+		hierarchy = null;
+		router = newRouter();
+		evacuation = null; // built on the damaged snapshot by Effects.detonation
+		pathCache.clear(); // cached paths may cross removed edges
+	}
+
+
+	/**
+	 * @return a new search over the current snapshot with its own state, for use on one thread
+	 */
+	Router newRouter() {
+		if (Parameters.useContractionHierarchy && hierarchy != null) {
+			return hierarchy.newQuery();
+		}
+		if (Parameters.bidirectionalSearch) {
+			return new BidirectionalAStar(roadGraph, landmarks, trafficCosts);
+		}
+		return new AStar(roadGraph, landmarks, trafficCosts);
+	}
+
+	
+	/**
+	 * Refreshes the congestion routing costs from the current edge traffic
+	 * Cached paths were found with the old costs, so the path cache is emptied
+	 */
+	void refreshTrafficCosts() {
+		if (trafficCosts == null) {
+			return;
+		}
+		trafficCosts.refresh(this);
+		pathCache.clear();
+	}
+
+
 	/**
 	 * Start Method
      * Initialization and start of the World Simulation
@@ -130,6 +286,7 @@ public class World extends SimState {
     	    Effects NWMD = new Effects();
     		
     		super.start();
+    		behaviors = Parameters.behaviorScheduling ? new BehaviorScheduler(this) : null;
     		
     		// Initializing spatial layers, Group, and Individual classes in WorldBuilder
     		// access spatial input files and create the simulation environment
@@ -181,14 +338,30 @@ public class World extends SimState {
         	
     		System.out.println("World->start->on to scheduling at " + clock.instant());
     		
+    		schedule.scheduleRepeating(Schedule.EPOCH, -1, allocations, 1);  // ahead of everything else in the step
     		schedule.scheduleRepeating(NWMD, 0, 1);
+    		if (behaviors != null) {
+    			// steps the agents, in place of each agent, after NWMD so they react to this step's effects
+    			schedule.scheduleRepeating(Schedule.EPOCH, 1, behaviors, 1);
+    		}
     			
+    		// the fields' spatial indexes, used by the display and inspectors, follow just the agents that
+    		// moved, see AgentField, so keeping them current is cheap enough for headless runs too
     		schedule.scheduleRepeating(indvs.scheduleSpatialIndexUpdater(), 100, 1);
-    		
     		schedule.scheduleRepeating(groups.scheduleSpatialIndexUpdater(), 1000, 1);
-    		
+    			
     		schedule.scheduleRepeating(logs, 10000, 1);
     		
+    		// congestion routing costs are refreshed in batches after the agents move, not per search
+    		if (Parameters.congestionRouting) {
+    			schedule.scheduleRepeating(Schedule.EPOCH, 2, new Steppable() {
+    				@Override
+    				public void step(SimState state) {
+    					((World) state).refreshTrafficCosts();
+    				}
+    			}, Parameters.congestionRefreshSteps);
+    		}
+    		
        		// World (headless) data collection from the model run
        		this.schedule.scheduleRepeating(new Steppable()  {
         		@Override
@@ -17,24 +17,27 @@ package disaster;
 // Class imports
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.Envelope;
-import com.vividsolutions.jts.geom.GeometryFactory;
-import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.planargraph.Node;
 
 import sim.field.geo.GeomGridField;
 import sim.field.geo.GeomVectorField;
 import sim.io.geo.ShapeFileImporter;
+import sim.util.geo.GeomPlanarGraphDirectedEdge;
 import sim.util.geo.GeomPlanarGraphEdge;
 import sim.util.geo.MasonGeometry;
 import java.io.*;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 
 public class WorldBuilder {
@@ -68,6 +71,11 @@ public class WorldBuilder {
 	private static double totalcomdist = 0;
 	private static double avgcomdist = 0;
 	private static int noDrivers = 0;
+	private static long popBuildTime = 0; // time to read the population and build the agents
+	private static long routeWallTime = 0; // elapsed time of the parallel commute routing
+	private static long serialWallTime = 0; // elapsed time of the same routing on one thread, see Parameters.initSpeedupReport
+	private static int serialMismatches = 0; // pairs whose one thread path differed from the parallel one
+	private static int routedPairs = 0;
 	
 	// Need a global MBR
 	static Envelope globalMBR;
@@ -81,8 +89,8 @@ public class WorldBuilder {
 	public static HashMap <String, String> dCareToRdIDs = new HashMap <String, String> ();
 	public static HashMap <String, String> cWrkToRdIDs = new HashMap <String, String> (); // total daytime locations of children (school +  daycare)
 	// used to check which workplaces are outside the commuter region
-	private static ArrayList<String> outwrkIDs = new ArrayList<String> ();
-	private static ArrayList<String> rdIDs = new ArrayList<String> ();
+	private static BitSet outwrkIDs = new BitSet();	// World.ids numbers of the outer work place IDs
+	private static BitSet rdIDs = new BitSet();		// World.ids numbers of the road IDs in the commuter region
 	
 	
 	//========================================
@@ -101,8 +109,18 @@ public class WorldBuilder {
 		
 		System.out.println("WorldBuilder>initialize>");	
 		createEnvironment(world); // load map layers
+		
+		// indvs keep their state in columns for population-wide scans, taking one as they are created
+		if (Parameters.agentStore) {
+			world.agentStore = new AgentStore(1024);
+		}
 		createPopulation(world);  // create population from synthetic population data
 		
+		// the population is final, drop the discarded agents' columns and order the rest as Log.indvList
+		if (world.agentStore != null) {
+			world.agentStore.compact(Log.indvList);
+		}
+		
 	}
 	
 	
@@ -159,6 +177,8 @@ public class WorldBuilder {
 		} catch (Exception e) {
 			e.printStackTrace();
 		}		
+		// water tests of fleeing agents read a raster of the water layer
+		world.waterMask = new WaterMask(world.waterField, Parameters.waterMaskMeters * Parameters.decDegreesPerMeter);
 		System.out.println("WorldBuilder>createEnvironment>expand MBR for water layer...");
 		globalMBR.expandToInclude(world.waterField.getMBR());
 		
@@ -195,6 +215,7 @@ public class WorldBuilder {
         
         
         // set speed limits for traffic
+        world.edgeAttributes = new EdgeAttributes(world.roadNetwork.getEdges().size());
         for (Object o : world.roadNetwork.getEdges())
         {
             GeomPlanarGraphEdge e = (GeomPlanarGraphEdge) o;
@@ -230,41 +251,15 @@ public class WorldBuilder {
             double edgeDistance = (e.getDoubleAttribute("distance")*0.001) ;  // edge distance in kilometers
 
             world.idsToEdges.put(ID, e);  // world.idsToEdges.put(e.getDoubleAttribute("ID_ID").intValue(), e);
-            world.edgesToDistance.put(e, edgeDistance);
-            world.edgesToSpeedLimit.put(e, speedlimit);
-            
-            e.setData(new ArrayList<Agent>());
+            world.edgeAttributes.add(e, edgeDistance, speedlimit, MTFCC);  // numbers the edge
         }
+        world.edgeTraffic = new EdgeOccupancy(world.edgeAttributes.size());
         
         System.out.println("WorldBuilder>createEnvironment>Number of network edges in HashMap: " + world.idsToEdges.size());
         
+        // build the routing snapshot once the speed limits and distances are set
+        world.updateRoadGraph();
         
-        /**
-         * adds nodes corresponding to road intersections to GeomVectorField
-         * <p/>
-         * @param nodeIterator  Points to first node
-         * @param intersections GeomVectorField containing intersection geometry
-         * <p/>
-         * Nodes will belong to a planar graph populated from LineString network.
-         */
-        
-        GeometryFactory fact = new GeometryFactory();
-        Coordinate coord = null;
-        Point point = null;
-        int counter = 0;
-
-        Iterator<?> nodeIterator = world.roadNetwork.nodeIterator();
-        
-        while (nodeIterator.hasNext())
-        {
-        	// Create a GeometryVectorField of points representing road intersections
-            Node node = (Node) nodeIterator.next();
-            coord = node.getCoordinate();
-            point = fact.createPoint(coord);
-
-            world.roadIntersections.addGeometry(new MasonGeometry(point));
-            counter++;
-        }
         
         /**
 		 * Read in file to use for check on which agents have work outside the commuter region
@@ -281,8 +276,8 @@ public class WorldBuilder {
 				String [] field = t.split(",");
 				String rdid = field[1]; //road id
 				
-				// add rdIDs to an Array List
-				rdIDs.add(rdid);
+				// add rdIDs to the set
+				rdIDs.set(world.ids.intern(rdid));
 			}
 			
 			// clean up
@@ -292,7 +287,7 @@ public class WorldBuilder {
 			System.out.println("WorldBuilder>createEnvironment>Read WorkIDs ERROR: issue with outerwork file: " + e);
 		}
 		
-		System.out.println("WorldBuilder>createEnvironment>added rdIDs for verification: arraylist of length: " + rdIDs.size());
+		System.out.println("WorldBuilder>createEnvironment>added rdIDs for verification: set of size: " + rdIDs.cardinality());
 		
 	}
 	
@@ -301,6 +296,18 @@ public class WorldBuilder {
 	//    Create Agent Population
 	//=========================================
 	 
+	/**
+	 * @param set BitSet of World.ids numbers
+	 * @param world
+	 * @param id
+	 * @return true if the ID is in the set
+	 */
+	private static boolean isListed(BitSet set, World world, String id) {
+		int n = world.ids.lookup(id);
+		return (n >= 0) && set.get(n);
+	}
+	
+	
 	/** Create buildings and agent population from demographic input file
 	 *  Also, creates the agent's ArrayList of household social connections
 	 * @param world
@@ -324,8 +331,8 @@ public class WorldBuilder {
 					String [] field = t.split(",");
 					String workID = field[1];	// work id number
 					
-					// add IDs to an Array List
-					outwrkIDs.add(workID);			
+					// add IDs to the set
+					outwrkIDs.set(world.ids.intern(workID));			
 					//lines++;	
 				}
 				// clean up
@@ -334,7 +341,7 @@ public class WorldBuilder {
 		catch (Exception e) {
 				System.out.println("WorldBuilder>createPopulation>Read WorkIDs ERROR: issue with outerwork file: " + e);
 			}
-			System.out.println("WorldBuilder>createPopulation>added outerWrkIDs for verification: arraylist of length: " + outwrkIDs.size());
+			System.out.println("WorldBuilder>createPopulation>added outerWrkIDs for verification: set of size: " + outwrkIDs.cardinality());
 				
 		//=======================
 		// read work roadIDs
@@ -479,15 +486,19 @@ public class WorldBuilder {
 			String t;
 
 			w.readLine(); // get rid of the header			
-					
+			
+			long popStart = System.nanoTime();
+			
+			// resolve each row's home and daytime road IDs
+			ArrayList<String[]> rows = new ArrayList<String[]>();
 			while ( (t = w.readLine()) != null ){ // read in all data
 				// note: can make the IDs smaller by scraping out the track numbers
 				String [] field = t.split(",");
 				
 				//new load
 				String agentID = field[1];	// ID number
-				String tract = agentID.substring(0,11);
-				String county = agentID.substring(0,5);
+				String tract = world.ids.canonical(agentID.substring(0,11));	// shared by everyone in the tract
+				String county = world.ids.canonical(agentID.substring(0,5));
 				String age = field[2];
 				String sex = field[3];
 				String homeID = field[4];  // ID of home location
@@ -501,14 +512,14 @@ public class WorldBuilder {
 				if (workID.contains("w")) {  // check if string has 'w' (work), if not
 					wrkRdID = wrkToRdIDs.get(workID);
 					if (wrkRdID == null) {
-						if (outwrkIDs.contains(workID)) {
+						if (isListed(outwrkIDs, world, workID)) {
 							outofareaWrkIDs++;
 						}
 						workID = homeID;
 						wrkRdID = hmRdID;
 						nullWrkIDs++;
 					}
-					else if (!rdIDs.contains(wrkRdID)) {
+					else if (!isListed(rdIDs, world, wrkRdID)) {
 						workID = homeID;
 						wrkRdID = hmRdID;
 						wrkoutofRdNet++;
@@ -522,7 +533,7 @@ public class WorldBuilder {
 					if (wrkRdID == null) {
 						nullschlWrkIDs++;
 					}
-					else if (!rdIDs.contains(wrkRdID)) {
+					else if (!isListed(rdIDs, world, wrkRdID)) {
 						workID = homeID;
 						wrkRdID = hmRdID;
 						schloutofRdNet++;
@@ -537,7 +548,7 @@ public class WorldBuilder {
 						wrkRdID = hmRdID; // if this is null, work defaults to home (until daycare file cleaned up)
 						nulldcWrkIDs++;
 					}
-					else if (!rdIDs.contains(wrkRdID)) {
+					else if (!isListed(rdIDs, world, wrkRdID)) {
 						workID = homeID;
 						wrkRdID = hmRdID;
 						dcareoutofRdNet++;
@@ -551,7 +562,7 @@ public class WorldBuilder {
 					if (wrkRdID == null) {
 						nullhmWrkIDs++;
 					}
-					else if (!rdIDs.contains(wrkRdID)) {
+					else if (!isListed(rdIDs, world, wrkRdID)) {
 						wrkRdID = hmRdID;
 						hmoutofRdNet++;
 					}
@@ -563,6 +574,26 @@ public class WorldBuilder {
 					invalidWrkIDs++;
 				}
 				
+				rows.add(new String[] {agentID, tract, county, age, sex, homeID, workID, hmRdID, wrkRdID});
+			}
+			
+			// search the commute paths on all cores first, the agent constructors below then
+			// take them from the paths pinned in the path cache; agents are still registered one at a time in row order
+			ArrayList<Long> routedKeys = null;
+			if (Parameters.parallelInit && world.pathCache.isEnabled()) {
+				routedKeys = routeCommutes(world, rows);
+			}
+			
+			for (String[] row : rows) {
+				String agentID = row[0];
+				String tract = row[1];
+				String county = row[2];
+				String age = row[3];
+				String sex = row[4];
+				String homeID = row[5];
+				String workID = row[6];
+				String hmRdID = row[7];
+				String wrkRdID = row[8];
 
 					if (counter % 1 == 0) {  // sample the data file by a given factor, l.e. 1, 10, 100, etc.
 						
@@ -587,7 +618,7 @@ public class WorldBuilder {
 			    			}
 
 
-							Indv a = new Indv(world, serialVersionUID, tract, county, agentID, age, sex, homeID, workID, hmRdID, wrkRdID, 
+							Indv a = new Indv(world, tract, county, agentID, age, sex, homeID, workID, hmRdID, wrkRdID, 
 									household);
 							
 							
@@ -620,9 +651,10 @@ public class WorldBuilder {
 							else {
 								MasonGeometry newGeometry = a.getGeometry();
 								newGeometry.isMovable = true;
-								world.indvs.addGeometry(newGeometry);
+								world.indvs.add(a);
+								world.indvGrid.add(a);
 								Log.indvList.add(a); // ArrayList of the individuals
-								world.schedule.scheduleRepeating(a);
+								world.scheduleAgent(a);
 								
 								Log.agentpopulation++; 
 								world.idsToIndvs.put(a.getID(),a); // add to HashMap used to retrieve agent objects, if there is a path
@@ -644,6 +676,10 @@ public class WorldBuilder {
 			
 			avgpath = totalpath / counter;	
 			avgcomdist = totalcomdist / counter;
+			popBuildTime = System.nanoTime() - popStart;
+			if (routedKeys != null) {
+				world.pathCache.unpin(routedKeys);  // warm the LRU with the routed paths
+			}
 			
 			// clean up
 			w.close(); 	
@@ -706,6 +742,25 @@ public class WorldBuilder {
 		System.out.println("WorldBuilder>createPopulation>Daycare agents without drivers:" + noDrivers);
 		System.out.println("WorldBuilder>createPopulation>Longest path: " + longestpath + "  Avg path: " + avgpath);
 		System.out.println("WorldBuilder>createPopulation>Longest commute: " + longestcomdist + " Avg comdist: " + avgcomdist);
+		System.out.println("WorldBuilder>createPopulation>Population build time (ms): " + popBuildTime / 1000000
+				+ (Parameters.parallelInit ? " parallel" : " serial"));
+		if (Parameters.parallelInit && routeWallTime > 0) {
+			System.out.println("WorldBuilder>createPopulation>Parallel commute routing: " + routedPairs + " home/work pairs on " 
+					+ Parameters.initThreads + " threads in (ms): " + routeWallTime / 1000000);
+			if (serialWallTime > 0) {
+				System.out.println("WorldBuilder>createPopulation>Same routing on one thread in (ms): " + serialWallTime / 1000000 
+						+ "  speedup: " + String.format("%.2f", (double) serialWallTime / routeWallTime)
+						+ "  differing paths: " + serialMismatches);
+			}
+		}
+		if (Parameters.landmarkHeuristic) {
+			RoutingBenchmark.compareHeuristics(world);
+		}
+		if (Parameters.bidirectionalSearch) {
+			RoutingBenchmark.compareDirections(world);
+		}
+		System.out.println("WorldBuilder>createPopulation>Path cache hits: " + world.pathCache.hits + " misses: " + world.pathCache.misses 
+				+ " cached paths: " + world.pathCache.size());
 		System.out.println("");
 		System.out.println("WorldBuilder>createPopulation>created agent population size: " + Log.agentpopulation + "  number of groups: " + Log.grouppopulation); 
 				// can also check: + " " + world.idsToAgents.size());
@@ -740,6 +795,138 @@ public class WorldBuilder {
     }
     
     
+    /**
+     * Searches the commute path of every distinct home/work node pair on a fork-join pool
+     * and pins the paths in the world's path cache for the agent constructors
+     * @param world
+     * @param rows population rows resolved in createPopulation
+     * @return keys of the routed pairs in row order, for warming the cache once the agents are built
+     */
+    private static ArrayList<Long> routeCommutes(final World world, ArrayList<String[]> rows) {
+    	
+    	// collect distinct pairs in row order, using the same nodes as the Indv constructor
+    	LinkedHashMap<Long, Node[]> pairs = new LinkedHashMap<Long, Node[]>();
+    	for (String[] row : rows) {
+    		GeomPlanarGraphEdge startingEdge = world.idsToEdges.get(row[7]);
+    		GeomPlanarGraphEdge goalEdge = world.idsToEdges.get(row[8]);
+    		if (startingEdge == null || goalEdge == null) {
+    			continue;
+    		}
+    		Node home = startingEdge.getDirEdge(0).getFromNode();
+    		Node work = goalEdge.getDirEdge(0).getToNode();
+    		int s = world.roadGraph.nodeId(home);
+    		int t = world.roadGraph.nodeId(work);
+    		if (home == work || s < 0 || t < 0) {
+    			continue;
+    		}
+    		Long key = PathCache.key(s, t);
+    		if (!pairs.containsKey(key)) {
+    			pairs.put(key, new Node[] {home, work});
+    		}
+    	}
+    	ArrayList<Long> keys = new ArrayList<Long>(pairs.keySet());
+    	ArrayList<Node[]> pairList = new ArrayList<Node[]>(pairs.values());
+    	routedPairs = pairList.size();
+    	
+    	// each task writes the paths of its own range, so no locking is needed
+    	CompactPath[] routed = new CompactPath[routedPairs];
+    	routeWallTime = routePairs(world, pairList, routed, Parameters.initThreads);
+    	
+    	HashMap<Long, CompactPath> paths = new HashMap<Long, CompactPath>(2 * routedPairs);
+    	for (int i = 0; i < routedPairs; i++) {
+    		paths.put(keys.get(i), routed[i]);
+    	}
+    	world.pathCache.pin(paths);
+    	
+    	// time the same searches on one thread for the speedup report
+    	if (Parameters.initSpeedupReport) {
+    		CompactPath[] serial = new CompactPath[routedPairs];
+    		serialWallTime = routePairs(world, pairList, serial, 1);
+    		serialMismatches = 0;
+    		for (int i = 0; i < routedPairs; i++) {
+    			if ((routed[i] == null) ? (serial[i] != null) : !routed[i].equals(serial[i])) {
+    				serialMismatches++;
+    			}
+    		}
+    	}
+    	
+    	System.out.println("WorldBuilder>createPopulation>routeCommutes>searched " + routedPairs + " home/work pairs for " 
+    			+ rows.size() + " rows");
+    	return keys;
+    }
+    
+    
+    /**
+     * Searches the pairs on a fork-join pool
+     * @param world
+     * @param pairs home and work nodes
+     * @param out path of each pair
+     * @param threads
+     * @return elapsed time in ns
+     */
+    private static long routePairs(final World world, ArrayList<Node[]> pairs, CompactPath[] out, int threads) {
+    	
+    	// each worker thread gets its own search state over the shared, read-only snapshot
+    	ThreadLocal<Router> searches = new ThreadLocal<Router>() {
+    		@Override
+    		protected Router initialValue() {
+    			return world.newRouter();
+    		}
+    	};
+    	
+    	ForkJoinPool pool = new ForkJoinPool(threads);
+    	long start = System.nanoTime();
+    	try {
+    		pool.invoke(new CommuteRouteTask(world, searches, pairs, out, 0, pairs.size()));
+    	} finally {
+    		pool.shutdown();
+    	}
+    	return System.nanoTime() - start;
+    }
+    
+    
+    /**
+     * Fork-join task that searches a range of home/work pairs
+     */
+    private static class CommuteRouteTask extends RecursiveAction {
+    	
+    	private static final long serialVersionUID = 1L;
+    	private static final int THRESHOLD = 32; // pairs searched without splitting further
+    	
+    	private final World world;
+    	private final ThreadLocal<Router> searches;
+    	private final ArrayList<Node[]> pairs;
+    	private final CompactPath[] out;
+    	private final int from, to;
+    	
+    	CommuteRouteTask(World world, ThreadLocal<Router> searches, ArrayList<Node[]> pairs, CompactPath[] out, int from, int to) {
+    		this.world = world;
+    		this.searches = searches;
+    		this.pairs = pairs;
+    		this.out = out;
+    		this.from = from;
+    		this.to = to;
+    	}
+    	
+    	@Override
+    	protected void compute() {
+    		if (to - from <= THRESHOLD) {
+    			Router search = searches.get();
+    			for (int i = from; i < to; i++) {
+    				Node[] pair = pairs.get(i);
+    				ArrayList<GeomPlanarGraphDirectedEdge> path = search.findPath(pair[0], pair[1]);
+    				out[i] = CompactPath.of(path, world.edgeAttributes);
+    			}
+    		}
+    		else {
+    			int mid = (from + to) >>> 1;
+    			invokeAll(new CommuteRouteTask(world, searches, pairs, out, from, mid),
+    					  new CommuteRouteTask(world, searches, pairs, out, mid, to));
+    		}
+    	}
+    }
+    
+    
     /**
      * Creates or updates the HashMap of household social networks
      * Either creates a new household network entry, adds an agent to an existing household, or creates the first household entry
@@ -927,7 +1114,7 @@ public class WorldBuilder {
 	static void makeCarpool(World world, Indv driver, Indv rider) {
 		// Create group
 		Integer grpIDnum = world.idsToGrps.size(); // get next group ID number
-		Group g = new Group(world, serialVersionUID, grpIDnum, driver, rider, "carpool");
+		Group g = new Group(world, grpIDnum, driver, rider, "carpool");
 
 		// record the group id for the carpool network
 		driver.setindvGrpID(g.getID());
@@ -966,11 +1153,12 @@ public class WorldBuilder {
 			newGeometry.isMovable = true;
 			Log.grpList.add(g); // Arraylist of the groups
 			
-			world.schedule.scheduleRepeating(g);
+			world.scheduleAgent(g);
 			
 			Log.grouppopulation++;
 
-			world.groups.addGeometry(newGeometry);
+			world.groups.add(g);
+			world.groupGrid.add(g);
 			g.ckGoalNodes(); // prints out multipath goal nodes and individual group member goal nodes for verification
 		}	
 
@@ -214,6 +214,8 @@ public class WorldWithUI extends GUIState
     {
         super.start();
         
+        // the display picks agents through the fields' spatial indexes, World.start keeps them current
+        
         setupPortrayals();
         setupCharts();
         